@@ -0,0 +1,416 @@
+package bench;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import javax.imageio.ImageIO;
+
+import model.Contact;
+import model.ContactCodec;
+import model.ContactImage;
+import model.ContactList;
+import model.ImageStore;
+import persistence.ContactSnapshot;
+
+/**
+ * Deterministic generator of synthetic address books.
+ * The same seed always produces the same contacts, identifiers and images, so problems seen
+ * with large production books can be reproduced locally.
+ *
+ * Names and company domains follow a Zipf distribution over common values and a long tail
+ * of generated ones; most emails use a handful of large mail providers.
+ * Contacts have zero to three emails and optionally a synthetic photo in an {@link ImageStore}.
+ *
+ * Usage: AddressBookGenerator count [seed] [imageRatio] [target snapshot] [image directory]
+ */
+public class AddressBookGenerator {
+
+    /** Common first names, most frequent first */
+    private static final String[] COMMON_FIRST_NAMES = {
+        "Anna", "Thomas", "Maria", "Michael", "Laura", "Daniel", "Julia", "Stefan", "Sarah", "Andreas",
+        "Lisa", "Christian", "Lena", "Markus", "Sophie", "Alexander", "Emma", "Jan", "Hannah", "Tobias",
+        "Katharina", "Sebastian", "Johanna", "Florian", "Lea", "Matthias", "Mia", "Martin", "Clara", "Jonas",
+        "Elena", "Lukas", "Nina", "Felix", "Paula", "David", "Marie", "Paul", "Sandra", "Peter",
+        "Jürgen", "Zoë", "José", "Chloé", "Björn", "Søren", "Ines", "Luca", "Noah", "Olivia"
+    };
+
+    /** Common last names, most frequent first */
+    private static final String[] COMMON_LAST_NAMES = {
+        "Müller", "Schmidt", "Schneider", "Fischer", "Weber", "Meyer", "Wagner", "Becker", "Schulz", "Hoffmann",
+        "Schäfer", "Koch", "Bauer", "Richter", "Klein", "Wolf", "Schröder", "Neumann", "Schwarz", "Zimmermann",
+        "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller", "Davis", "Rodriguez", "Martinez",
+        "Rossi", "Russo", "Ferrari", "Esposito", "Dubois", "Martin", "Bernard", "Nowak", "Kowalski", "Novák",
+        "Jensen", "Nielsen", "Hansen", "Andersson", "Johansson", "Silva", "Santos", "Yilmaz", "Kaya", "O'Brien"
+    };
+
+    /** Large mail providers */
+    private static final String[] PROVIDERS = {
+        "gmail.com", "outlook.com", "yahoo.com", "gmx.de", "web.de", "icloud.com", "hotmail.com", "posteo.de"
+    };
+
+    /** Share of the provider emails in percent, per provider */
+    private static final int[] PROVIDER_SHARES = {38, 17, 12, 10, 9, 7, 5, 2};
+
+    /** Syllables of generated names and domains */
+    private static final String[] SYLLABLES = {
+        "an", "ber", "ca", "del", "en", "fa", "gor", "hal", "in", "jo", "ka", "lin", "mar", "nor", "ol",
+        "pe", "qui", "ros", "sa", "tor", "ul", "ven", "wil", "xa", "yo", "zen"
+    };
+
+    /** Top-level domains of company domains */
+    private static final String[] TOP_LEVEL_DOMAINS = {"com", "de", "org", "io", "net", "eu"};
+
+    /** Number of distinct first names */
+    private static final int FIRST_NAME_COUNT = 2_000;
+
+    /** Number of distinct last names */
+    private static final int LAST_NAME_COUNT = 20_000;
+
+    /** Number of distinct company domains */
+    private static final int COMPANY_DOMAIN_COUNT = 20_000;
+
+    /** Share of the emails at a large mail provider in percent */
+    private static final int PROVIDER_PERCENT = 60;
+
+    /** Edge length of the synthetic photos in pixels */
+    private static final int IMAGE_SIZE = 256;
+
+    /** Source of all random decisions */
+    private final Random random;
+
+    /** Store of the synthetic photos, null for contacts without photos */
+    private final ImageStore store;
+
+    /** Share of the contacts with a photo, from 0 to 1 */
+    private final double imageRatio;
+
+    /** First names by rank */
+    private final String[] firstNames;
+
+    /** Last names by rank */
+    private final String[] lastNames;
+
+    /** First names by rank as used in emails */
+    private final String[] firstNamesAscii;
+
+    /** Last names by rank as used in emails */
+    private final String[] lastNamesAscii;
+
+    /** Company domains by rank */
+    private final String[] companyDomains;
+
+    /** Cumulative Zipf weights of the first names */
+    private final double[] firstNameWeights;
+
+    /** Cumulative Zipf weights of the last names */
+    private final double[] lastNameWeights;
+
+    /** Cumulative Zipf weights of the company domains */
+    private final double[] companyDomainWeights;
+
+    /**
+     * Constructor for AddressBookGenerator.
+     * Creates contacts without photos.
+     *
+     * @param seed the seed of the generated contacts
+     */
+    public AddressBookGenerator(long seed) {
+        this(seed, null, 0);
+    }
+
+    /**
+     * Constructor for AddressBookGenerator.
+     *
+     * @param seed the seed of the generated contacts
+     * @param store the store of the synthetic photos, null for no photos
+     * @param imageRatio the share of the contacts with a photo, from 0 to 1
+     */
+    public AddressBookGenerator(long seed, ImageStore store, double imageRatio) {
+        if (imageRatio < 0 || imageRatio > 1) {
+            throw new IllegalArgumentException("Image ratio must be between 0 and 1: " + imageRatio);
+        }
+        this.random = new Random(seed);
+        this.store = store;
+        this.imageRatio = store == null ? 0 : imageRatio;
+        // The pools depend only on the seed, not on the number of generated contacts
+        Random pools = new Random(seed ^ 0x5DEECE66DL);
+        this.firstNames = createPool(COMMON_FIRST_NAMES, FIRST_NAME_COUNT, pools);
+        this.lastNames = createPool(COMMON_LAST_NAMES, LAST_NAME_COUNT, pools);
+        this.firstNamesAscii = Arrays.stream(this.firstNames).map(AddressBookGenerator::toAscii).toArray(String[]::new);
+        this.lastNamesAscii = Arrays.stream(this.lastNames).map(AddressBookGenerator::toAscii).toArray(String[]::new);
+        this.companyDomains = new String[COMPANY_DOMAIN_COUNT];
+        for (int i = 0; i < this.companyDomains.length; i++) {
+            this.companyDomains[i] = createWord(pools, 2 + pools.nextInt(2)).toLowerCase(Locale.ROOT)
+                    + "." + TOP_LEVEL_DOMAINS[pools.nextInt(TOP_LEVEL_DOMAINS.length)];
+        }
+        this.firstNameWeights = zipfWeights(this.firstNames.length);
+        this.lastNameWeights = zipfWeights(this.lastNames.length);
+        this.companyDomainWeights = zipfWeights(this.companyDomains.length);
+    }
+
+    /**
+     * Creates a contact list with generated contacts.
+     * The contacts are restored in one bulk operation, without entries in the change log.
+     *
+     * @param count the number of contacts
+     * @return the contact list
+     */
+    public ContactList createContactList(int count) {
+        ContactList contactList = new ContactList("generated");
+        contactList.restoreContacts(createContacts(count));
+        return contactList;
+    }
+
+    /**
+     * Creates generated contacts.
+     *
+     * @param count the number of contacts
+     * @return the contacts
+     */
+    public List<Contact> createContacts(int count) {
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            contacts.add(createContact());
+        }
+        return contacts;
+    }
+
+    /**
+     * Creates the next generated contact.
+     *
+     * @return the contact
+     */
+    public Contact createContact() {
+        String id = new UUID(this.random.nextLong(), this.random.nextLong()).toString();
+        int nameRank = pick(this.firstNameWeights);
+        int lastNameRank = pick(this.lastNameWeights);
+        String name = this.firstNames[nameRank];
+        String lastName = this.lastNames[lastNameRank];
+        int roll = this.random.nextInt(100);
+        int emailCount = roll < 5 ? 0 : roll < 75 ? 1 : roll < 95 ? 2 : 3;
+        Contact contact = ContactCodec.restore(id, name, lastName);
+        for (int i = 0; i < emailCount; i++) {
+            String email = createEmail(this.firstNamesAscii[nameRank], this.lastNamesAscii[lastNameRank]);
+            // Duplicate addresses are rare in real books and are dropped
+            if (!contact.getEmails().contains(email) && !contact.addEmail(email)) {
+                throw new IllegalStateException("Generated invalid email " + email);
+            }
+        }
+        if (this.imageRatio > 0 && this.random.nextDouble() < this.imageRatio) {
+            contact.setContactImage(createImage(this.random.nextLong()));
+        }
+        return contact;
+    }
+
+    /**
+     * Creates an email address for a name.
+     *
+     * @param first the first name in ASCII letters
+     * @param last the last name in ASCII letters
+     * @return the email address
+     */
+    private String createEmail(String first, String last) {
+        String local;
+        switch (this.random.nextInt(5)) {
+            case 0:
+                local = first + "_" + last;
+                break;
+            case 1:
+                local = first.charAt(0) + last;
+                break;
+            case 2:
+                local = first + last;
+                break;
+            case 3:
+                local = last + "_" + first;
+                break;
+            default:
+                local = first;
+        }
+        // Many addresses carry a number to make them unique at their provider
+        if (this.random.nextInt(10) < 4) {
+            local += this.random.nextInt(this.random.nextBoolean() ? 100 : 10_000);
+        }
+        String domain;
+        if (this.random.nextInt(100) < PROVIDER_PERCENT) {
+            int share = this.random.nextInt(100);
+            int provider = 0;
+            while (share >= PROVIDER_SHARES[provider]) {
+                share -= PROVIDER_SHARES[provider++];
+            }
+            domain = PROVIDERS[provider];
+        } else {
+            domain = this.companyDomains[pick(this.companyDomainWeights)];
+        }
+        return local + "@" + domain;
+    }
+
+    /**
+     * Creates a synthetic photo and adds it to the store.
+     * Gradients, shapes and noise give the files a size similar to compressed photos.
+     *
+     * @param seed the seed of the photo
+     * @return the reference to the stored photo
+     */
+    private ContactImage createImage(long seed) {
+        Random pixels = new Random(seed);
+        BufferedImage image = new BufferedImage(IMAGE_SIZE, IMAGE_SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        try {
+            Color background = new Color(pixels.nextInt(0x1000000));
+            g.setColor(background);
+            g.fillRect(0, 0, IMAGE_SIZE, IMAGE_SIZE);
+            g.setColor(background.brighter());
+            g.fillOval(IMAGE_SIZE / 4, IMAGE_SIZE / 8, IMAGE_SIZE / 2, IMAGE_SIZE / 2);
+            g.fillOval(IMAGE_SIZE / 8, IMAGE_SIZE * 5 / 8, IMAGE_SIZE * 3 / 4, IMAGE_SIZE * 3 / 4);
+        } finally {
+            g.dispose();
+        }
+        for (int y = 0; y < IMAGE_SIZE; y++) {
+            for (int x = 0; x < IMAGE_SIZE; x++) {
+                int noise = pixels.nextInt(16) * 0x010101;
+                image.setRGB(x, y, (image.getRGB(x, y) + noise) & 0xFFFFFF);
+            }
+        }
+        try {
+            Path file = Files.createTempFile("generated", ".png");
+            try {
+                ImageIO.write(image, "png", file.toFile());
+                return this.store.put(file);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Picks a rank from cumulative weights.
+     *
+     * @param cumulative the cumulative weights, ending with 1
+     * @return the picked rank
+     */
+    private int pick(double[] cumulative) {
+        int index = Arrays.binarySearch(cumulative, this.random.nextDouble());
+        return Math.min(cumulative.length - 1, index < 0 ? -index - 1 : index);
+    }
+
+    /**
+     * Returns the cumulative weights of a Zipf distribution with exponent 1.
+     *
+     * @param count the number of ranks
+     * @return the cumulative weights, ending with 1
+     */
+    private static double[] zipfWeights(int count) {
+        double[] cumulative = new double[count];
+        double sum = 0;
+        for (int i = 0; i < count; i++) {
+            sum += 1.0 / (i + 1);
+            cumulative[i] = sum;
+        }
+        for (int i = 0; i < count; i++) {
+            cumulative[i] /= sum;
+        }
+        return cumulative;
+    }
+
+    /**
+     * Creates a pool of distinct values: the common values followed by generated ones.
+     *
+     * @param common the common values, most frequent first
+     * @param count the size of the pool
+     * @param random the source of the generated values
+     * @return the pool by rank
+     */
+    private static String[] createPool(String[] common, int count, Random random) {
+        String[] pool = Arrays.copyOf(common, count);
+        Set<String> seen = new HashSet<>(Arrays.asList(common));
+        for (int i = common.length; i < count; i++) {
+            String value;
+            do {
+                value = createWord(random, 2 + random.nextInt(3));
+            } while (!seen.add(value));
+            pool[i] = value;
+        }
+        return pool;
+    }
+
+    /**
+     * Creates a capitalized word from syllables.
+     *
+     * @param random the source of the syllables
+     * @param syllables the number of syllables
+     * @return the word
+     */
+    private static String createWord(Random random, int syllables) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < syllables; i++) {
+            sb.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        sb.setCharAt(0, Character.toUpperCase(sb.charAt(0)));
+        return sb.toString();
+    }
+
+    /**
+     * Converts a name to the ASCII letters allowed in the local part of an email.
+     *
+     * @param name the name
+     * @return the lower-case ASCII letters of the name
+     */
+    private static String toAscii(String name) {
+        String decomposed = Normalizer.normalize(name, Normalizer.Form.NFD).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (c >= 'a' && c <= 'z') {
+                sb.append(c);
+            } else if (c == 'ø') {
+                sb.append('o');
+            }
+        }
+        return sb.length() == 0 ? "contact" : sb.toString();
+    }
+
+    /**
+     * Writes a generated address book as snapshot.
+     *
+     * @param args the number of contacts, optionally the seed, the share of contacts with a photo,
+     *        the target file (default generated.snapshot) and the directory of the image store
+     *        (default a new temporary directory; the snapshot carries the images anyway)
+     * @throws IOException if the snapshot cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println(
+                    "Usage: AddressBookGenerator count [seed] [imageRatio] [target snapshot] [image directory]");
+            System.exit(2);
+        }
+        int count = Integer.parseInt(args[0]);
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        double imageRatio = args.length > 2 ? Double.parseDouble(args[2]) : 0;
+        Path target = Paths.get(args.length > 3 ? args[3] : "generated.snapshot");
+        Path images = args.length > 4 ? Paths.get(args[4]) : Files.createTempDirectory("generated-images");
+        AddressBookGenerator generator = new AddressBookGenerator(seed, new ImageStore(images), imageRatio);
+        long start = System.nanoTime();
+        List<Contact> contacts = generator.createContacts(count);
+        ContactSnapshot.write(target, contacts);
+        System.out.printf(Locale.ROOT, "%d contacts (seed %d) written to %s in %.0f ms, images in %s%n",
+                count, seed, target, (System.nanoTime() - start) / 1e6, images);
+    }
+}
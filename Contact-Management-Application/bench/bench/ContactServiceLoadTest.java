@@ -0,0 +1,192 @@
+package bench;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import model.Contact;
+import model.ContactList;
+import service.ContactServer;
+
+/**
+ * Load test of the contact service.
+ * Serves a generated contact list from an embedded {@link ContactServer} whose model executor is a single
+ * thread, like the JavaFX application thread, and sends requests from concurrent clients for a fixed time:
+ * pages of the list, single contacts, revalidations with If-None-Match and replacements of contacts.
+ *
+ * Prints the throughput, the latency percentiles and the number of responses per status;
+ * requests failing without a response are counted under status 0.
+ * Usage: ContactServiceLoadTest [contacts] [clients] [seconds]
+ */
+public class ContactServiceLoadTest {
+
+    /** Share of the requests replacing a contact in percent */
+    private static final int WRITE_PERCENT = 5;
+
+    /**
+     * Runs the load test.
+     *
+     * @param args the number of contacts, the number of concurrent clients and the duration in seconds
+     * @throws Exception if the test fails
+     */
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        int clients = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+
+        ContactList contactList = new AddressBookGenerator(1).createContactList(count);
+        List<String> ids = new ArrayList<>(count);
+        for (Contact contact : contactList.getList()) {
+            ids.add(contact.getId());
+        }
+        ExecutorService model = Executors.newSingleThreadExecutor();
+        ContactServer server = new ContactServer(contactList, model);
+        server.start(0);
+        URI base = URI.create("http://localhost:" + server.getPort());
+        HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        ExecutorService pool = Executors.newFixedThreadPool(clients);
+        try {
+            // Warm-up, then the measured run
+            run(pool, http, base, ids, clients, 2);
+            Result result = run(pool, http, base, ids, clients, seconds);
+            System.out.printf(Locale.ROOT, "%d contacts, %d clients, %d s: %d requests, %.0f requests/s%n",
+                    count, clients, seconds, result.latencies.length, result.latencies.length / (double) seconds);
+            Arrays.sort(result.latencies);
+            System.out.printf(Locale.ROOT, "latency ms: p50 %.2f, p90 %.2f, p99 %.2f, max %.2f%n",
+                    percentile(result.latencies, 50), percentile(result.latencies, 90),
+                    percentile(result.latencies, 99), percentile(result.latencies, 100));
+            System.out.println("responses by status: " + result.statuses);
+        } finally {
+            pool.shutdownNow();
+            server.stop();
+            model.shutdown();
+        }
+    }
+
+    /**
+     * Sends requests from concurrent clients for a fixed time.
+     *
+     * @param pool the threads of the clients
+     * @param http the HTTP client
+     * @param base the address of the service
+     * @param ids the identifiers of the served contacts
+     * @param clients the number of clients
+     * @param seconds the duration in seconds
+     * @return the latencies and statuses of all requests
+     */
+    private static Result run(ExecutorService pool, HttpClient http, URI base, List<String> ids,
+            int clients, int seconds) throws Exception {
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int c = 0; c < clients; c++) {
+            long seed = c;
+            futures.add(pool.submit(() -> client(http, base, ids, new Random(seed), end)));
+        }
+        Result total = new Result();
+        for (Future<Result> future : futures) {
+            total.add(future.get());
+        }
+        return total;
+    }
+
+    /**
+     * Sends requests of one client until the end time.
+     *
+     * @param http the HTTP client
+     * @param base the address of the service
+     * @param ids the identifiers of the served contacts
+     * @param random the source of the requests
+     * @param end the end time in nanoseconds
+     * @return the latencies and statuses of the requests
+     */
+    private static Result client(HttpClient http, URI base, List<String> ids, Random random, long end)
+            throws InterruptedException {
+        Result result = new Result();
+        String etag = null;
+        List<Double> latencies = new ArrayList<>();
+        while (System.nanoTime() < end) {
+            String id = ids.get(random.nextInt(ids.size()));
+            int roll = random.nextInt(100);
+            HttpRequest request;
+            if (roll < WRITE_PERCENT) {
+                request = HttpRequest.newBuilder(base.resolve("/contacts/" + id))
+                        .PUT(HttpRequest.BodyPublishers.ofString("{\"name\":\"Load\",\"lastName\":\"Test" + roll
+                                + "\",\"emails\":[\"load" + roll + "@example.com\"]}"))
+                        .build();
+            } else if (roll < 40) {
+                request = HttpRequest.newBuilder(base.resolve("/contacts/" + id)).build();
+            } else if (roll < 60 && etag != null) {
+                request = HttpRequest.newBuilder(base.resolve("/contacts?offset=0&limit=50"))
+                        .header("If-None-Match", etag).build();
+            } else {
+                int offset = random.nextInt(Math.max(1, ids.size() - 50));
+                request = HttpRequest.newBuilder(base.resolve("/contacts?offset=" + offset + "&limit=50")).build();
+            }
+            long start = System.nanoTime();
+            try {
+                HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+                latencies.add((System.nanoTime() - start) / 1e6);
+                result.statuses.merge(response.statusCode(), 1, Integer::sum);
+                etag = response.headers().firstValue("ETag").orElse(etag);
+            } catch (IOException e) {
+                // Failed requests are counted under status 0
+                result.statuses.merge(0, 1, Integer::sum);
+                System.err.println(request.method() + " " + request.uri().getPath() + ": " + e);
+            }
+        }
+        result.latencies = latencies.stream().mapToDouble(Double::doubleValue).toArray();
+        return result;
+    }
+
+    /**
+     * Returns a percentile of sorted values.
+     *
+     * @param sorted the sorted values
+     * @param percent the percentile from 0 to 100
+     * @return the percentile, 0 if there are no values
+     */
+    private static double percentile(double[] sorted, double percent) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Latencies and response statuses of requests.
+     */
+    private static final class Result {
+
+        /** Latency per request in milliseconds */
+        private double[] latencies = new double[0];
+
+        /** Number of responses per status */
+        private final Map<Integer, Integer> statuses = new TreeMap<>();
+
+        /**
+         * Adds the requests of another result.
+         *
+         * @param other the other result
+         */
+        void add(Result other) {
+            double[] merged = Arrays.copyOf(this.latencies, this.latencies.length + other.latencies.length);
+            System.arraycopy(other.latencies, 0, merged, this.latencies.length, other.latencies.length);
+            this.latencies = merged;
+            other.statuses.forEach((status, n) -> this.statuses.merge(status, n, Integer::sum));
+        }
+    }
+}
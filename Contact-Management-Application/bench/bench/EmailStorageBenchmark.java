@@ -0,0 +1,63 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Contact;
+
+/**
+ * Measures the heap used per contact with compact email storage
+ * and after every contact's observable email list has been created.
+ *
+ * Run with a fixed heap for stable numbers, e.g. -Xms2g -Xmx2g.
+ * Optional argument: number of contacts (default 1,000,000).
+ */
+public class EmailStorageBenchmark {
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of contacts
+     */
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+
+        long baseline = usedHeap();
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // A third of the contacts have no email, the others one or two
+            Contact contact = new Contact("Name" + i, "Last" + i);
+            for (int e = 0; e < i % 3; e++) {
+                contact.addEmail("user" + i + "_" + e + "@example.com");
+            }
+            contacts.add(contact);
+        }
+        long compact = usedHeap() - baseline;
+
+        for (Contact contact : contacts) {
+            contact.getEmailList();
+        }
+        long observable = usedHeap() - baseline;
+
+        System.out.printf("contacts:             %,d%n", contacts.size());
+        System.out.printf("compact emails:       %,d bytes/contact%n", compact / count);
+        System.out.printf("observable emails:    %,d bytes/contact%n", observable / count);
+        System.out.printf("saved:                %,d bytes/contact%n", (observable - compact) / count);
+    }
+
+    /**
+     * Returns the used heap after garbage collection.
+     *
+     * @return the used heap in bytes
+     */
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+        // Several rounds, a single System.gc() does not reliably collect everything
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+        return used;
+    }
+}
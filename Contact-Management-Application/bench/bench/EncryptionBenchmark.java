@@ -0,0 +1,120 @@
+package bench;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Contact;
+import model.ContactCodec;
+import model.ImageStore;
+import persistence.EncryptedContactFile;
+
+/**
+ * Compares writing and reading contacts through the encrypted container
+ * with the same chunks written unencrypted.
+ *
+ * Optional argument: number of contacts (default 1,000,000).
+ */
+public class EncryptionBenchmark {
+
+    /** Number of measured rounds after the warm-up round */
+    private static final int ROUNDS = 3;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of contacts
+     * @throws IOException if a file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            contacts.add(new Contact("Name" + i, "Last" + i, "user" + i + "@example.com"));
+        }
+        char[] password = "benchmark".toCharArray();
+        ImageStore store = new ImageStore(Files.createTempDirectory("bench-images"));
+        Path plainFile = Files.createTempFile("contacts", ".plain");
+        Path encryptedFile = Files.createTempFile("contacts", ".enc");
+        try {
+            for (int round = 0; round <= ROUNDS; round++) {
+                long t0 = System.nanoTime();
+                writePlain(plainFile, contacts);
+                long t1 = System.nanoTime();
+                int plainRead = readPlain(plainFile, store).size();
+                long t2 = System.nanoTime();
+                EncryptedContactFile.write(encryptedFile, contacts, password);
+                long t3 = System.nanoTime();
+                int encryptedRead = EncryptedContactFile.readAll(encryptedFile, password, store).size();
+                long t4 = System.nanoTime();
+                if (plainRead != count || encryptedRead != count) {
+                    throw new IllegalStateException("Read " + plainRead + "/" + encryptedRead + " of " + count);
+                }
+                if (round == 0) {
+                    continue;
+                }
+                System.out.printf("round %d: plain write %s, plain read %s | encrypted write %s, encrypted read %s%n",
+                        round,
+                        rate(Files.size(plainFile), t1 - t0), rate(Files.size(plainFile), t2 - t1),
+                        rate(Files.size(encryptedFile), t3 - t2), rate(Files.size(encryptedFile), t4 - t3));
+            }
+            System.out.println("Encrypted timings include one PBKDF2 key derivation per write and read.");
+        } finally {
+            Files.deleteIfExists(plainFile);
+            Files.deleteIfExists(encryptedFile);
+        }
+    }
+
+    /**
+     * Writes the contacts as unencrypted chunks.
+     *
+     * @param file the target file
+     * @param contacts the contacts
+     */
+    private static void writePlain(Path file, List<Contact> contacts) throws IOException {
+        int chunkSize = EncryptedContactFile.DEFAULT_CHUNK_SIZE;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (int from = 0; from < contacts.size(); from += chunkSize) {
+                byte[] chunk = ContactCodec.encode(contacts.subList(from, Math.min(contacts.size(), from + chunkSize)));
+                out.writeInt(chunk.length);
+                out.write(chunk);
+            }
+        }
+    }
+
+    /**
+     * Reads unencrypted chunks.
+     *
+     * @param file the source file
+     * @param store the store resolving image hashes
+     * @return the contacts
+     */
+    private static List<Contact> readPlain(Path file, ImageStore store) throws IOException {
+        List<Contact> contacts = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            while (in.available() > 0) {
+                byte[] chunk = new byte[in.readInt()];
+                in.readFully(chunk);
+                contacts.addAll(ContactCodec.decode(chunk, store));
+            }
+        }
+        return contacts;
+    }
+
+    /**
+     * Formats a duration with its throughput.
+     *
+     * @param bytes the number of bytes processed
+     * @param nanos the duration in nanoseconds
+     * @return the formatted duration and throughput
+     */
+    private static String rate(long bytes, long nanos) {
+        return String.format("%.0f ms (%.0f MB/s)", nanos / 1e6, bytes / 1e6 / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,157 @@
+package bench;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.Contact;
+import model.ImageStore;
+import persistence.ContactSnapshot;
+
+/**
+ * Compares the columnar snapshot with a CSV export of the same contacts
+ * in size and in write and read time, and measures reading only the names.
+ *
+ * Optional argument: number of contacts (default 1,000,000).
+ */
+public class SnapshotBenchmark {
+
+    /** Number of measured rounds after the warm-up round */
+    private static final int ROUNDS = 3;
+
+    /**
+     * Runs the benchmark.
+     *
+     * @param args the number of contacts
+     * @throws IOException if a file cannot be written or read
+     */
+    public static void main(String[] args) throws IOException {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        List<Contact> contacts = createContacts(count);
+        ImageStore store = new ImageStore(Files.createTempDirectory("bench-images"));
+        Path csvFile = Files.createTempFile("contacts", ".csv");
+        Path snapshotFile = Files.createTempFile("contacts", ".snapshot");
+        try {
+            for (int round = 0; round <= ROUNDS; round++) {
+                long t0 = System.nanoTime();
+                writeCsv(csvFile, contacts);
+                long t1 = System.nanoTime();
+                int csvRead = readCsv(csvFile).size();
+                long t2 = System.nanoTime();
+                ContactSnapshot.write(snapshotFile, contacts);
+                long t3 = System.nanoTime();
+                int snapshotRead = ContactSnapshot.read(snapshotFile, store).size();
+                long t4 = System.nanoTime();
+                int namesRead;
+                try (ContactSnapshot.Reader reader = ContactSnapshot.Reader.open(snapshotFile)) {
+                    namesRead = reader.readFirstNames().length;
+                    reader.readLastNames();
+                }
+                long t5 = System.nanoTime();
+                if (csvRead != count || snapshotRead != count || namesRead != count) {
+                    throw new IllegalStateException("Read " + csvRead + "/" + snapshotRead + "/" + namesRead
+                            + " of " + count);
+                }
+                if (round == 0) {
+                    continue;
+                }
+                System.out.printf("round %d: csv write %.0f ms, read %.0f ms | snapshot write %.0f ms, "
+                        + "read %.0f ms, names only %.0f ms%n",
+                        round, (t1 - t0) / 1e6, (t2 - t1) / 1e6, (t3 - t2) / 1e6, (t4 - t3) / 1e6, (t5 - t4) / 1e6);
+            }
+            long csvSize = Files.size(csvFile);
+            long snapshotSize = Files.size(snapshotFile);
+            System.out.printf("csv %.1f MB, snapshot %.1f MB (%.0f%% of csv)%n",
+                    csvSize / 1e6, snapshotSize / 1e6, 100.0 * snapshotSize / csvSize);
+        } finally {
+            Files.deleteIfExists(csvFile);
+            Files.deleteIfExists(snapshotFile);
+        }
+    }
+
+    /**
+     * Creates contacts with names and domains drawn from small pools, as in a real address book.
+     *
+     * @param count the number of contacts
+     * @return the contacts
+     */
+    private static List<Contact> createContacts(int count) {
+        Random random = new Random(42);
+        String[] names = new String[300];
+        String[] lastNames = new String[5000];
+        String[] domains = new String[200];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = "Name" + i;
+        }
+        for (int i = 0; i < lastNames.length; i++) {
+            lastNames[i] = "Last" + i;
+        }
+        for (int i = 0; i < domains.length; i++) {
+            domains[i] = "domain" + i + ".com";
+        }
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            // Common first names are much more frequent than rare ones
+            int rank = (int) Math.abs(random.nextGaussian() * names.length / 4);
+            String name = names[Math.min(names.length - 1, rank)];
+            String lastName = lastNames[random.nextInt(lastNames.length)];
+            Contact contact = new Contact(name, lastName);
+            int emails = random.nextInt(10) < 7 ? 1 : 2;
+            for (int e = 0; e < emails; e++) {
+                contact.addEmail(name.toLowerCase() + "_" + lastName.toLowerCase() + i
+                        + "@" + domains[random.nextInt(random.nextBoolean() ? 5 : domains.length)]);
+            }
+            contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    /**
+     * Writes the contacts as CSV: id, names and the emails separated by semicolons.
+     *
+     * @param file the target file
+     * @param contacts the contacts
+     */
+    private static void writeCsv(Path file, List<Contact> contacts) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (Contact contact : contacts) {
+                out.write(contact.getId());
+                out.write(',');
+                out.write(contact.getName());
+                out.write(',');
+                out.write(contact.getLastName());
+                out.write(',');
+                out.write(String.join(";", contact.getEmails()));
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads contacts written by {@link #writeCsv(Path, List)}.
+     *
+     * @param file the source file
+     * @return the contacts, without their identifiers
+     */
+    private static List<Contact> readCsv(Path file) throws IOException {
+        List<Contact> contacts = new ArrayList<>();
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] fields = line.split(",", -1);
+                Contact contact = new Contact(fields[1], fields[2]);
+                for (String email : fields[3].split(";")) {
+                    contact.addEmail(email);
+                }
+                contacts.add(contact);
+            }
+        }
+        return contacts;
+    }
+}
@@ -0,0 +1,611 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.Alert;
+import javafx.scene.control.Button;
+import javafx.scene.control.ListView;
+import javafx.stage.Stage;
+import model.Contact;
+import model.ContactList;
+import model.ImageStore;
+import view.MainController;
+import view.MainView;
+import view.PopUp;
+
+/**
+ * Headless load test of the main view with a large generated address book.
+ *
+ * Starts JavaFX on the headless Monocle platform, shows a {@link MainView} over a contact list from
+ * {@link AddressBookGenerator} and drives it through scripted scenarios: scrolling, selecting contacts,
+ * and adding, editing and deleting contacts through the buttons with a scripted {@link PopUp}.
+ * Each scenario measures
+ * <ul>
+ * <li>frame times, the intervals between pulses seen by an {@link AnimationTimer}</li>
+ * <li>stalls of the JavaFX application thread, the delay of pings posted with {@link Platform#runLater(Runnable)}</li>
+ * <li>the bytes allocated by the JavaFX application thread</li>
+ * </ul>
+ * The results are written as a tab-separated report; given the report of an earlier build,
+ * the changes are printed per scenario.
+ *
+ * Needs the Monocle platform of OpenJFX on the module or class path.
+ * Usage: UiLoadTest [contacts] [seed] [imageRatio] [report] [baseline report]
+ */
+public class UiLoadTest {
+
+    /** Steps per scenario */
+    private static final int STEPS = 200;
+
+    /** Rows scrolled per step */
+    private static final int SCROLL_ROWS = 25;
+
+    /** Size of the window */
+    private static final double WIDTH = 1024;
+
+    /** Height of the window */
+    private static final double HEIGHT = 768;
+
+    /** Interval of the stall pings in milliseconds */
+    private static final long PING_INTERVAL_MILLIS = 5;
+
+    /** Ping delay from which the application thread counts as stalled, in milliseconds */
+    private static final double STALL_MILLIS = 50;
+
+    /** Frame interval from which a frame counts as janky, in milliseconds: two frames at 60 Hz */
+    private static final double JANK_MILLIS = 33.4;
+
+    /** Longest wait for a frame in seconds */
+    private static final long FRAME_TIMEOUT_SECONDS = 30;
+
+    /** Columns of the report after the scenario name */
+    private static final String[] COLUMNS = {
+        "steps", "millis", "frames", "frame_p50_ms", "frame_p95_ms", "frame_p99_ms", "frame_max_ms",
+        "janky_frames", "stalls", "stall_max_ms", "stall_total_ms", "alloc_mb", "alloc_mb_per_s"
+    };
+
+    /** Main view under test */
+    private MainView mainView;
+
+    /** List of contacts of the main view */
+    private ListView<Contact> listView;
+
+    /** Buttons of the main view by text */
+    private final Map<String, Button> buttons = new LinkedHashMap<>();
+
+    /** Frame times of the running scenario */
+    private final FrameMonitor frames = new FrameMonitor();
+
+    /** Stalls of the running scenario */
+    private final StallWatchdog watchdog = new StallWatchdog();
+
+    /** Identifier of the JavaFX application thread */
+    private long fxThreadId;
+
+    /** Source of the selected rows */
+    private final Random random;
+
+    /**
+     * Constructor for UiLoadTest.
+     *
+     * @param seed the seed of the scripted selections
+     */
+    private UiLoadTest(long seed) {
+        this.random = new Random(seed);
+    }
+
+    /**
+     * Runs the load test.
+     *
+     * @param args the number of contacts, the seed, the share of contacts with a photo,
+     *        the report file and the report of an earlier build
+     * @throws Exception if the test fails
+     */
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 100_000;
+        long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+        double imageRatio = args.length > 2 ? Double.parseDouble(args[2]) : 0.1;
+        Path report = Paths.get(args.length > 3 ? args[3] : "ui-load-report.tsv");
+        Path baseline = args.length > 4 ? Paths.get(args[4]) : null;
+
+        // Headless platform, and a private home so saved groups and images of the user are not touched
+        System.setProperty("glass.platform", "Monocle");
+        System.setProperty("monocle.platform", "Headless");
+        System.setProperty("prism.order", "sw");
+        System.setProperty("java.awt.headless", "true");
+        Path home = Files.createTempDirectory("ui-load-home");
+        System.setProperty("user.home", home.toString());
+
+        long start = System.nanoTime();
+        AddressBookGenerator generator =
+                new AddressBookGenerator(seed, new ImageStore(home.resolve("images")), imageRatio);
+        ContactList contactList = generator.createContactList(count);
+        System.out.printf(Locale.ROOT, "Generated %d contacts in %.0f ms%n", count, (System.nanoTime() - start) / 1e6);
+
+        CountDownLatch started = new CountDownLatch(1);
+        Platform.startup(started::countDown);
+        started.await();
+        Platform.setImplicitExit(false);
+
+        UiLoadTest test = new UiLoadTest(seed);
+        onFx(() -> test.fxThreadId = Thread.currentThread().getId());
+        Map<String, double[]> results = new LinkedHashMap<>();
+        try {
+            results.put("startup", test.show(contactList, generator));
+            results.put("scroll", test.scroll(count));
+            results.put("select", test.select());
+            results.put("add", test.add());
+            results.put("edit", test.edit());
+            results.put("delete", test.delete());
+        } finally {
+            test.watchdog.stop();
+            onFx(() -> {
+                test.frames.stop();
+                if (test.mainView != null) {
+                    test.mainView.shutdown();
+                }
+            });
+            Platform.exit();
+        }
+
+        writeReport(report, count, seed, imageRatio, results);
+        System.out.println("Report written to " + report);
+        printResults(results, baseline == null ? null : readReport(baseline));
+    }
+
+    /**
+     * Shows the main view and waits for the first frame.
+     *
+     * @param contactList the contact list
+     * @param generator the generator of added contacts
+     * @return the results of the scenario
+     */
+    private double[] show(ContactList contactList, AddressBookGenerator generator) throws Exception {
+        this.watchdog.start();
+        return measure(1, step -> {
+            ScriptedPopUp popUp = new ScriptedPopUp(generator);
+            this.mainView = new MainView(new MainController(contactList) { }, popUp);
+            Stage stage = new Stage();
+            stage.setScene(new Scene(this.mainView.getView(), WIDTH, HEIGHT));
+            stage.show();
+            this.frames.start();
+            findNodes(contactList);
+        });
+    }
+
+    /**
+     * Scrolls through the list of contacts a page per frame.
+     *
+     * @param count the number of contacts
+     * @return the results of the scenario
+     */
+    private double[] scroll(int count) throws Exception {
+        return measure(STEPS, step -> this.listView.scrollTo((int) ((long) step * SCROLL_ROWS % Math.max(1, count))));
+    }
+
+    /**
+     * Selects random contacts, which shows their details and photos.
+     *
+     * @return the results of the scenario
+     */
+    private double[] select() throws Exception {
+        return measure(STEPS, step -> selectRandom());
+    }
+
+    /**
+     * Adds contacts through the add button.
+     *
+     * @return the results of the scenario
+     */
+    private double[] add() throws Exception {
+        return measure(STEPS, step -> this.buttons.get("Add Contact").fire());
+    }
+
+    /**
+     * Edits random contacts through the edit button.
+     *
+     * @return the results of the scenario
+     */
+    private double[] edit() throws Exception {
+        return measure(STEPS, step -> {
+            selectRandom();
+            this.buttons.get("Edit Contact").fire();
+        });
+    }
+
+    /**
+     * Deletes random contacts through the delete button.
+     *
+     * @return the results of the scenario
+     */
+    private double[] delete() throws Exception {
+        return measure(STEPS, step -> {
+            selectRandom();
+            this.buttons.get("Delete Contact").fire();
+        });
+    }
+
+    /**
+     * Selects a random contact and scrolls it into view.
+     */
+    private void selectRandom() {
+        int size = this.listView.getItems().size();
+        if (size > 0) {
+            int index = this.random.nextInt(size);
+            this.listView.getSelectionModel().clearAndSelect(index);
+            this.listView.scrollTo(index);
+        }
+    }
+
+    /**
+     * Finds the list of contacts and the buttons in the scene graph of the main view.
+     *
+     * @param contactList the contact list shown by the view
+     */
+    @SuppressWarnings("unchecked")
+    private void findNodes(ContactList contactList) {
+        for (Node node : this.mainView.getView().lookupAll(".list-view")) {
+            if (((ListView<?>) node).getItems() == contactList.getList()) {
+                this.listView = (ListView<Contact>) node;
+            }
+        }
+        for (Node node : this.mainView.getView().lookupAll(".button")) {
+            Button button = (Button) node;
+            this.buttons.put(button.getText(), button);
+        }
+        if (this.listView == null || !this.buttons.containsKey("Add Contact")) {
+            throw new IllegalStateException("Main view has no list of contacts or no add button");
+        }
+    }
+
+    /**
+     * Runs the steps of a scenario, one step per frame, and measures them.
+     *
+     * @param steps the number of steps
+     * @param step the step, run on the JavaFX application thread
+     * @return the results of the scenario in the order of {@link #COLUMNS}
+     */
+    private double[] measure(int steps, IntConsumer step) throws Exception {
+        com.sun.management.ThreadMXBean threads =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        this.frames.reset();
+        this.watchdog.reset();
+        long allocatedBefore = threads.getThreadAllocatedBytes(this.fxThreadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < steps; i++) {
+            int index = i;
+            onFx(() -> step.accept(index));
+            // Lets the step be laid out and rendered before the next one
+            this.frames.awaitFrames(1);
+        }
+        double millis = (System.nanoTime() - start) / 1e6;
+        long allocated = threads.getThreadAllocatedBytes(this.fxThreadId) - allocatedBefore;
+
+        double[] frameMillis = this.frames.getIntervals();
+        double[] stallMillis = this.watchdog.getStalls();
+        double allocatedMb = allocated / 1e6;
+        return new double[] {
+            steps,
+            millis,
+            frameMillis.length,
+            percentile(frameMillis, 50),
+            percentile(frameMillis, 95),
+            percentile(frameMillis, 99),
+            percentile(frameMillis, 100),
+            Arrays.stream(frameMillis).filter(m -> m >= JANK_MILLIS).count(),
+            stallMillis.length,
+            percentile(stallMillis, 100),
+            Arrays.stream(stallMillis).sum(),
+            allocatedMb,
+            allocatedMb / (millis / 1000)
+        };
+    }
+
+    /**
+     * Runs a task on the JavaFX application thread and waits for it.
+     *
+     * @param task the task
+     */
+    private static void onFx(Runnable task) throws Exception {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        Platform.runLater(() -> {
+            try {
+                task.run();
+                done.complete(null);
+            } catch (Throwable t) {
+                done.completeExceptionally(t);
+            }
+        });
+        done.get(FRAME_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Returns a percentile of values.
+     *
+     * @param values the values
+     * @param percent the percentile from 0 to 100
+     * @return the percentile, 0 if there are no values
+     */
+    private static double percentile(double[] values, double percent) {
+        if (values.length == 0) {
+            return 0;
+        }
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percent / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))];
+    }
+
+    /**
+     * Writes the report.
+     *
+     * @param file the report file
+     * @param count the number of contacts
+     * @param seed the seed
+     * @param imageRatio the share of contacts with a photo
+     * @param results the results per scenario
+     */
+    private static void writeReport(Path file, int count, long seed, double imageRatio,
+            Map<String, double[]> results) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            out.write(String.format(Locale.ROOT, "# contacts=%d seed=%d imageRatio=%s java=%s cores=%d%n", count, seed,
+                    imageRatio, System.getProperty("java.version"), Runtime.getRuntime().availableProcessors()));
+            out.write("scenario\t" + String.join("\t", COLUMNS));
+            out.newLine();
+            for (Map.Entry<String, double[]> entry : results.entrySet()) {
+                out.write(entry.getKey());
+                for (double value : entry.getValue()) {
+                    out.write(String.format(Locale.ROOT, "\t%.2f", value));
+                }
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * Reads a report written by {@link #writeReport(Path, int, long, double, Map)}.
+     *
+     * @param file the report file
+     * @return the results per scenario
+     */
+    private static Map<String, double[]> readReport(Path file) throws IOException {
+        Map<String, double[]> results = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (line.startsWith("#") || line.startsWith("scenario\t") || line.isBlank()) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            double[] values = new double[fields.length - 1];
+            for (int i = 1; i < fields.length; i++) {
+                values[i - 1] = Double.parseDouble(fields[i]);
+            }
+            results.put(fields[0], values);
+        }
+        return results;
+    }
+
+    /**
+     * Prints the results, with the change against a baseline if given.
+     *
+     * @param results the results per scenario
+     * @param baseline the results of an earlier build, may be null
+     */
+    private static void printResults(Map<String, double[]> results, Map<String, double[]> baseline) {
+        for (Map.Entry<String, double[]> entry : results.entrySet()) {
+            double[] before = baseline == null ? null : baseline.get(entry.getKey());
+            List<String> cells = new ArrayList<>();
+            for (int i = 0; i < COLUMNS.length; i++) {
+                double value = entry.getValue()[i];
+                String cell = COLUMNS[i] + "=" + String.format(Locale.ROOT, "%.1f", value);
+                if (before != null && i < before.length && before[i] != 0) {
+                    cell += String.format(Locale.ROOT, " (%+.0f%%)", (value - before[i]) / before[i] * 100);
+                }
+                cells.add(cell);
+            }
+            System.out.println(entry.getKey() + ": " + String.join(", ", cells));
+        }
+    }
+
+    /**
+     * Pop-up windows answering without user interaction.
+     * Added contacts come from the generator, edits change the last name and every confirmation is accepted.
+     */
+    private static final class ScriptedPopUp extends PopUp {
+
+        /** Generator of added contacts */
+        private final AddressBookGenerator generator;
+
+        /**
+         * Constructor for ScriptedPopUp.
+         *
+         * @param generator the generator of added contacts
+         */
+        ScriptedPopUp(AddressBookGenerator generator) {
+            this.generator = generator;
+        }
+
+        @Override
+        public Contact addContactWindow() {
+            return this.generator.createContact();
+        }
+
+        @Override
+        public Contact editContactWindow(Contact contact) {
+            Contact edited = new Contact(contact.getName(), contact.getLastName() + " Jr");
+            for (String email : contact.getEmails()) {
+                edited.addEmail(email);
+            }
+            edited.setContactImage(contact.getContactImage());
+            return edited;
+        }
+
+        @Override
+        protected boolean showConfirmation(String title, String header) {
+            return true;
+        }
+
+        @Override
+        protected void showAlert(Alert.AlertType alertType, String title, String content) {
+            System.err.println("Alert during load test: " + title + ": " + content);
+        }
+    }
+
+    /**
+     * Records the intervals between frames.
+     * Runs on the JavaFX application thread; the intervals are read from the test thread.
+     */
+    private static final class FrameMonitor extends AnimationTimer {
+
+        /** Time of the last frame in nanoseconds, 0 before the first frame */
+        private long last;
+
+        /** Intervals since the last reset in milliseconds */
+        private final List<Double> intervals = new ArrayList<>();
+
+        /** Number of frames since the start */
+        private long count;
+
+        @Override
+        public void handle(long now) {
+            synchronized (this) {
+                if (this.last != 0) {
+                    this.intervals.add((now - this.last) / 1e6);
+                }
+                this.last = now;
+                this.count++;
+                notifyAll();
+            }
+        }
+
+        /**
+         * Discards the recorded intervals.
+         */
+        synchronized void reset() {
+            this.intervals.clear();
+            this.last = 0;
+        }
+
+        /**
+         * Waits for frames after the current one.
+         *
+         * @param frames the number of frames
+         * @throws InterruptedException if interrupted while waiting
+         */
+        synchronized void awaitFrames(int frames) throws InterruptedException {
+            long target = this.count + frames;
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(FRAME_TIMEOUT_SECONDS);
+            while (this.count < target) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IllegalStateException("No frame within " + FRAME_TIMEOUT_SECONDS + " s");
+                }
+                TimeUnit.NANOSECONDS.timedWait(this, remaining);
+            }
+        }
+
+        /**
+         * Returns the recorded intervals.
+         *
+         * @return the intervals in milliseconds
+         */
+        synchronized double[] getIntervals() {
+            return this.intervals.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+
+    /**
+     * Measures how long the JavaFX application thread takes to run a posted ping.
+     * Only one ping is pending at a time, so a long stall is recorded once.
+     */
+    private static final class StallWatchdog implements Runnable {
+
+        /** Delays from the stall threshold on, since the last reset, in milliseconds */
+        private final List<Double> stalls = new ArrayList<>();
+
+        /** Pinging thread */
+        private Thread thread;
+
+        /** Whether the watchdog is running */
+        private volatile boolean running;
+
+        /**
+         * Starts pinging.
+         */
+        void start() {
+            this.running = true;
+            this.thread = new Thread(this, "fx-stall-watchdog");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+
+        /**
+         * Stops pinging.
+         *
+         * @throws InterruptedException if interrupted while waiting for the pinging thread
+         */
+        void stop() throws InterruptedException {
+            this.running = false;
+            if (this.thread != null) {
+                this.thread.interrupt();
+                this.thread.join();
+            }
+        }
+
+        @Override
+        public void run() {
+            while (this.running) {
+                CountDownLatch ran = new CountDownLatch(1);
+                long posted = System.nanoTime();
+                Platform.runLater(ran::countDown);
+                try {
+                    ran.await();
+                    double delay = (System.nanoTime() - posted) / 1e6;
+                    if (delay >= STALL_MILLIS) {
+                        synchronized (this) {
+                            this.stalls.add(delay);
+                        }
+                    }
+                    Thread.sleep(PING_INTERVAL_MILLIS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Discards the recorded stalls.
+         */
+        synchronized void reset() {
+            this.stalls.clear();
+        }
+
+        /**
+         * Returns the recorded stalls.
+         *
+         * @return the delays in milliseconds
+         */
+        synchronized double[] getStalls() {
+            return this.stalls.stream().mapToDouble(Double::doubleValue).toArray();
+        }
+    }
+}
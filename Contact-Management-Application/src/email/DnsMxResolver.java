@@ -0,0 +1,87 @@
+package email;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+
+import javax.naming.NameNotFoundException;
+import javax.naming.NamingEnumeration;
+import javax.naming.NamingException;
+import javax.naming.directory.Attribute;
+import javax.naming.directory.Attributes;
+import javax.naming.directory.DirContext;
+import javax.naming.directory.InitialDirContext;
+
+/**
+ * Resolver querying the MX records of the system's DNS servers through JNDI.
+ * A domain without MX records that has an A or AAAA record is its own mail exchanger
+ * (RFC 5321, section 5.1); a null MX record "0 ." means that the domain accepts no mail (RFC 7505).
+ */
+public class DnsMxResolver implements MxResolver {
+
+    /** Environment of the JNDI DNS provider */
+    private final Hashtable<String, String> environment = new Hashtable<>();
+
+    /**
+     * Constructor for DnsMxResolver.
+     *
+     * @param timeoutMillis the timeout of a single DNS query in milliseconds
+     */
+    public DnsMxResolver(int timeoutMillis) {
+        this.environment.put("java.naming.factory.initial", "com.sun.jndi.dns.DnsContextFactory");
+        this.environment.put("com.sun.jndi.dns.timeout.initial", String.valueOf(timeoutMillis));
+        this.environment.put("com.sun.jndi.dns.timeout.retries", "1");
+    }
+
+    @Override
+    public List<String> lookupMx(String domain) throws IOException {
+        DirContext context = null;
+        try {
+            context = new InitialDirContext(this.environment);
+            Attributes attributes = context.getAttributes(domain, new String[] {"MX"});
+            Attribute mx = attributes.get("MX");
+            List<String> hosts = new ArrayList<>();
+            if (mx != null) {
+                NamingEnumeration<?> values = mx.getAll();
+                while (values.hasMore()) {
+                    // Record format: "<preference> <host>."
+                    String[] parts = values.next().toString().split(" ");
+                    hosts.add(parts[parts.length - 1]);
+                }
+            }
+            if (hosts.equals(List.of("."))) {
+                return List.of();
+            }
+            if (hosts.isEmpty() && hasAddress(context, domain)) {
+                hosts.add(domain);
+            }
+            return hosts;
+        } catch (NameNotFoundException e) {
+            return List.of();
+        } catch (NamingException e) {
+            throw new IOException("MX lookup for " + domain + " failed", e);
+        } finally {
+            if (context != null) {
+                try {
+                    context.close();
+                } catch (NamingException e) {
+                    // Nothing to release
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks whether a domain has an A or AAAA record, used as implicit MX.
+     *
+     * @param context the open DNS context
+     * @param domain the domain name
+     * @return true if the domain has an address record
+     * @throws NamingException if the lookup failed
+     */
+    private static boolean hasAddress(DirContext context, String domain) throws NamingException {
+        Attributes attributes = context.getAttributes(domain, new String[] {"A", "AAAA"});
+        return attributes.get("A") != null || attributes.get("AAAA") != null;
+    }
+}
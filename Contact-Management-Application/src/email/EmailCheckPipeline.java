@@ -0,0 +1,343 @@
+package email;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Staged pipeline checking the deliverability of email addresses.
+ *
+ * Stage 1 normalizes the addresses and checks their syntax and the disposable domain list in parallel chunks.
+ * Stage 2 looks up the mail exchangers of every distinct remaining domain once.
+ * Stage 3 combines the results per address.
+ *
+ * Lookup results are cached per domain across runs, so a million addresses in 20,000 domains
+ * need 20,000 lookups. All work runs on a fixed number of threads.
+ */
+public class EmailCheckPipeline implements AutoCloseable {
+
+    /** Number of addresses per stage 1 task */
+    private static final int CHUNK_SIZE = 8192;
+
+    /** Well-known disposable email domains */
+    private static final Set<String> DEFAULT_DISPOSABLE_DOMAINS = Set.of(
+            "10minutemail.com", "discard.email", "dispostable.com", "getnada.com",
+            "guerrillamail.com", "mailinator.com", "maildrop.cc", "mintemail.com",
+            "sharklasers.com", "temp-mail.org", "tempmail.com", "throwawaymail.com",
+            "trashmail.com", "yopmail.com");
+
+    /**
+     * Summary of a pipeline run.
+     */
+    public static final class Report {
+
+        /** Results in the order of the input addresses */
+        private final List<EmailCheckResult> results;
+
+        /** Number of results per status */
+        private final Map<EmailCheckResult.Status, Integer> counts;
+
+        /** Number of distinct domains that were looked up */
+        private final int domains;
+
+        /** Number of resolver lookups made during the run */
+        private final long lookups;
+
+        /** Duration of the run in nanoseconds */
+        private final long elapsedNanos;
+
+        /**
+         * Constructor for Report.
+         *
+         * @param results the results in input order
+         * @param domains the number of distinct looked up domains
+         * @param lookups the number of resolver lookups
+         * @param elapsedNanos the duration of the run in nanoseconds
+         */
+        Report(List<EmailCheckResult> results, int domains, long lookups, long elapsedNanos) {
+            this.results = Collections.unmodifiableList(results);
+            this.domains = domains;
+            this.lookups = lookups;
+            this.elapsedNanos = elapsedNanos;
+            this.counts = new EnumMap<>(EmailCheckResult.Status.class);
+            for (EmailCheckResult result : results) {
+                this.counts.merge(result.getStatus(), 1, Integer::sum);
+            }
+        }
+
+        /**
+         * Returns the results.
+         *
+         * @return the results in the order of the input addresses
+         */
+        public List<EmailCheckResult> getResults() {
+            return this.results;
+        }
+
+        /**
+         * Returns the number of results with a status.
+         *
+         * @param status the status
+         * @return the number of results
+         */
+        public int getCount(EmailCheckResult.Status status) {
+            return this.counts.getOrDefault(status, 0);
+        }
+
+        /**
+         * Returns the number of distinct domains that needed a lookup.
+         *
+         * @return the number of domains
+         */
+        public int getDomainCount() {
+            return this.domains;
+        }
+
+        /**
+         * Returns the number of resolver lookups made during the run.
+         * Lower than the domain count if results were cached by an earlier run.
+         *
+         * @return the number of lookups
+         */
+        public long getLookupCount() {
+            return this.lookups;
+        }
+
+        /**
+         * Returns the duration of the run.
+         *
+         * @return the duration in milliseconds
+         */
+        public double getElapsedMillis() {
+            return this.elapsedNanos / 1e6;
+        }
+
+        /**
+         * Returns the throughput of the run.
+         *
+         * @return the checked addresses per second
+         */
+        public double getEmailsPerSecond() {
+            return this.elapsedNanos == 0 ? 0 : this.results.size() * 1e9 / this.elapsedNanos;
+        }
+
+        /**
+         * Returns a string representation of the report.
+         *
+         * @return the counts, lookups and throughput
+         */
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "%d emails, %s, %d domains, %d lookups, %.1f ms, %.0f emails/s",
+                    this.results.size(), this.counts, this.domains, this.lookups,
+                    getElapsedMillis(), getEmailsPerSecond());
+        }
+    }
+
+    /** Resolver for the mail exchangers */
+    private final MxResolver resolver;
+
+    /** Disposable email domains */
+    private final Set<String> disposableDomains;
+
+    /** Threads running the stages */
+    private final ExecutorService executor;
+
+    /** Cached lookup results per domain */
+    private final Map<String, CompletableFuture<EmailCheckResult.Status>> domainCache = new ConcurrentHashMap<>();
+
+    /** Number of resolver lookups */
+    private final AtomicLong lookups = new AtomicLong();
+
+    /**
+     * Constructor for EmailCheckPipeline using the built-in disposable domain list.
+     *
+     * @param resolver the resolver for the mail exchangers
+     * @param concurrency the maximum number of concurrent tasks and lookups
+     */
+    public EmailCheckPipeline(MxResolver resolver, int concurrency) {
+        this(resolver, DEFAULT_DISPOSABLE_DOMAINS, concurrency);
+    }
+
+    /**
+     * Constructor for EmailCheckPipeline.
+     *
+     * @param resolver the resolver for the mail exchangers
+     * @param disposableDomains the disposable email domains in ASCII lower case
+     * @param concurrency the maximum number of concurrent tasks and lookups
+     */
+    public EmailCheckPipeline(MxResolver resolver, Set<String> disposableDomains, int concurrency) {
+        if (concurrency < 1) {
+            throw new IllegalArgumentException("Concurrency must be positive: " + concurrency);
+        }
+        this.resolver = resolver;
+        this.disposableDomains = Set.copyOf(disposableDomains);
+        this.executor = Executors.newFixedThreadPool(concurrency, runnable -> {
+            Thread thread = new Thread(runnable, "email-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Reads a disposable domain list with one domain per line.
+     * Blank lines and lines starting with # are ignored.
+     *
+     * @param file the list file
+     * @return the domains in lower case
+     * @throws IOException if the file cannot be read
+     */
+    public static Set<String> readDomainList(Path file) throws IOException {
+        Set<String> domains = new HashSet<>();
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            String domain = line.trim().toLowerCase(Locale.ROOT);
+            if (!domain.isEmpty() && !domain.startsWith("#")) {
+                domains.add(domain);
+            }
+        }
+        return domains;
+    }
+
+    /**
+     * Checks email addresses.
+     * Blocks until all addresses are checked; call from a background thread.
+     *
+     * @param emails the email addresses
+     * @return the report of the run
+     */
+    public Report check(List<String> emails) {
+        long start = System.nanoTime();
+        long lookupsBefore = this.lookups.get();
+
+        // Stage 1: normalization, syntax and disposable domains
+        List<Future<List<EmailCheckResult>>> chunks = new ArrayList<>();
+        for (int from = 0; from < emails.size(); from += CHUNK_SIZE) {
+            List<String> chunk = emails.subList(from, Math.min(emails.size(), from + CHUNK_SIZE));
+            chunks.add(this.executor.submit(() -> precheck(chunk)));
+        }
+        List<EmailCheckResult> prechecked = new ArrayList<>(emails.size());
+        for (Future<List<EmailCheckResult>> chunk : chunks) {
+            prechecked.addAll(await(chunk));
+        }
+
+        // Stage 2: one lookup per distinct domain
+        Map<String, CompletableFuture<EmailCheckResult.Status>> domains = new LinkedHashMap<>();
+        for (EmailCheckResult result : prechecked) {
+            if (result.getStatus() == null) {
+                String domain = EmailNormalizer.domainOf(result.getNormalized());
+                domains.computeIfAbsent(domain, this::lookup);
+            }
+        }
+
+        // Stage 3: combination
+        List<EmailCheckResult> results = new ArrayList<>(prechecked.size());
+        for (EmailCheckResult result : prechecked) {
+            if (result.getStatus() == null) {
+                EmailCheckResult.Status status = await(domains.get(EmailNormalizer.domainOf(result.getNormalized())));
+                results.add(new EmailCheckResult(result.getEmail(), result.getNormalized(), status));
+            } else {
+                results.add(result);
+            }
+        }
+        return new Report(results, domains.size(), this.lookups.get() - lookupsBefore, System.nanoTime() - start);
+    }
+
+    /**
+     * Runs stage 1 for a chunk of addresses.
+     * Addresses that still need a lookup get a result without status.
+     *
+     * @param emails the chunk of addresses
+     * @return the preliminary results
+     */
+    private List<EmailCheckResult> precheck(List<String> emails) {
+        List<EmailCheckResult> results = new ArrayList<>(emails.size());
+        for (String email : emails) {
+            String normalized = EmailNormalizer.normalize(email);
+            EmailCheckResult.Status status = null;
+            if (normalized == null) {
+                status = EmailCheckResult.Status.INVALID_SYNTAX;
+            } else if (this.disposableDomains.contains(EmailNormalizer.domainOf(normalized))) {
+                status = EmailCheckResult.Status.DISPOSABLE;
+            }
+            results.add(new EmailCheckResult(email, normalized, status));
+        }
+        return results;
+    }
+
+    /**
+     * Returns the cached lookup of a domain, starting it if necessary.
+     * Failed lookups are not cached, so they are retried in the next run.
+     *
+     * @param domain the ASCII domain
+     * @return the future status of the domain
+     */
+    private CompletableFuture<EmailCheckResult.Status> lookup(String domain) {
+        CompletableFuture<EmailCheckResult.Status> future = this.domainCache.computeIfAbsent(domain,
+                d -> CompletableFuture.supplyAsync(() -> resolve(d), this.executor));
+        future.thenAccept(status -> {
+            if (status == EmailCheckResult.Status.LOOKUP_FAILED) {
+                this.domainCache.remove(domain, future);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Resolves the mail exchangers of a domain.
+     *
+     * @param domain the ASCII domain
+     * @return the status of the domain
+     */
+    private EmailCheckResult.Status resolve(String domain) {
+        this.lookups.incrementAndGet();
+        try {
+            return this.resolver.lookupMx(domain).isEmpty()
+                    ? EmailCheckResult.Status.NO_MX
+                    : EmailCheckResult.Status.DELIVERABLE;
+        } catch (IOException e) {
+            return EmailCheckResult.Status.LOOKUP_FAILED;
+        }
+    }
+
+    /**
+     * Waits for the result of a task.
+     *
+     * @param future the task
+     * @return the result of the task
+     */
+    private static <T> T await(Future<T> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while checking emails", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Email check failed", e.getCause());
+        }
+    }
+
+    /**
+     * Stops the threads of the pipeline.
+     */
+    @Override
+    public void close() {
+        this.executor.shutdownNow();
+    }
+}
@@ -0,0 +1,82 @@
+package email;
+
+/**
+ * Outcome of checking a single email address.
+ */
+public final class EmailCheckResult {
+
+    /**
+     * Status of a checked email address.
+     */
+    public enum Status {
+        /** The domain has mail exchangers */
+        DELIVERABLE,
+        /** The address or its domain is syntactically invalid */
+        INVALID_SYNTAX,
+        /** The domain belongs to a disposable email provider */
+        DISPOSABLE,
+        /** The domain has no mail exchangers */
+        NO_MX,
+        /** The MX lookup failed, e.g. because of a timeout */
+        LOOKUP_FAILED
+    }
+
+    /** Email address as given */
+    private final String email;
+
+    /** Normalized email address, null if the syntax is invalid */
+    private final String normalized;
+
+    /** Status of the check */
+    private final Status status;
+
+    /**
+     * Constructor for EmailCheckResult.
+     *
+     * @param email the email address as given
+     * @param normalized the normalized email address, null if the syntax is invalid
+     * @param status the status of the check
+     */
+    public EmailCheckResult(String email, String normalized, Status status) {
+        this.email = email;
+        this.normalized = normalized;
+        this.status = status;
+    }
+
+    /**
+     * Returns the email address as given.
+     *
+     * @return the email address
+     */
+    public String getEmail() {
+        return this.email;
+    }
+
+    /**
+     * Returns the normalized email address.
+     *
+     * @return the normalized address, null if the syntax is invalid
+     */
+    public String getNormalized() {
+        return this.normalized;
+    }
+
+    /**
+     * Returns the status of the check.
+     *
+     * @return the status
+     */
+    public Status getStatus() {
+        return this.status;
+    }
+
+    /**
+     * Returns a string representation of the result.
+     *
+     * @return the email address and the status
+     */
+    @Override
+    public String toString() {
+        return this.email + " " + this.status;
+    }
+}
@@ -0,0 +1,120 @@
+package email;
+
+import java.net.IDN;
+import java.util.Locale;
+
+/**
+ * Normalizes email addresses so that equivalent spellings compare equal.
+ * Lower-cases the address, converts internationalized domains to punycode
+ * and removes plus-address tags (jane+news@example.com becomes jane@example.com).
+ */
+public final class EmailNormalizer {
+
+    /** Maximum length of a local part */
+    private static final int MAX_LOCAL_LENGTH = 64;
+
+    /** Maximum length of a domain name */
+    private static final int MAX_DOMAIN_LENGTH = 253;
+
+    /** Maximum length of a domain label */
+    private static final int MAX_LABEL_LENGTH = 63;
+
+    /**
+     * Not instantiable.
+     */
+    private EmailNormalizer() {
+    }
+
+    /**
+     * Normalizes an email address.
+     *
+     * @param email the email address
+     * @return the normalized address or null if the address is syntactically invalid
+     */
+    public static String normalize(String email) {
+        if (email == null) {
+            return null;
+        }
+        String trimmed = email.trim();
+        int at = trimmed.lastIndexOf('@');
+        if (at <= 0 || at == trimmed.length() - 1 || trimmed.indexOf('@') != at) {
+            return null;
+        }
+        String local = trimmed.substring(0, at).toLowerCase(Locale.ROOT);
+        int plus = local.indexOf('+');
+        if (plus > 0) {
+            local = local.substring(0, plus);
+        }
+        if (local.length() > MAX_LOCAL_LENGTH || !isValidLocal(local)) {
+            return null;
+        }
+        String domain;
+        try {
+            domain = IDN.toASCII(trimmed.substring(at + 1), IDN.ALLOW_UNASSIGNED).toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return isValidDomain(domain) ? local + "@" + domain : null;
+    }
+
+    /**
+     * Returns the domain of a normalized email address.
+     *
+     * @param normalized the normalized email address
+     * @return the domain
+     */
+    public static String domainOf(String normalized) {
+        return normalized.substring(normalized.lastIndexOf('@') + 1);
+    }
+
+    /**
+     * Checks the characters of a local part (dot-atom form).
+     *
+     * @param local the lower-case local part
+     * @return true if the local part is valid
+     */
+    private static boolean isValidLocal(String local) {
+        if (local.isEmpty() || local.startsWith(".") || local.endsWith(".") || local.contains("..")) {
+            return false;
+        }
+        for (int i = 0; i < local.length(); i++) {
+            char c = local.charAt(i);
+            boolean valid = (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')
+                    || "!#$%&'*+-/=?^_`{|}~.".indexOf(c) >= 0;
+            if (!valid) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Checks the syntax of an ASCII domain name.
+     * Requires at least two labels of letters, digits and inner hyphens and a non-numeric top-level domain.
+     *
+     * @param domain the lower-case ASCII domain
+     * @return true if the domain is valid
+     */
+    static boolean isValidDomain(String domain) {
+        if (domain.isEmpty() || domain.length() > MAX_DOMAIN_LENGTH) {
+            return false;
+        }
+        String[] labels = domain.split("\\.", -1);
+        if (labels.length < 2) {
+            return false;
+        }
+        for (String label : labels) {
+            if (label.isEmpty() || label.length() > MAX_LABEL_LENGTH
+                    || label.startsWith("-") || label.endsWith("-")) {
+                return false;
+            }
+            for (int i = 0; i < label.length(); i++) {
+                char c = label.charAt(i);
+                if (!((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-')) {
+                    return false;
+                }
+            }
+        }
+        return !labels[labels.length - 1].chars().allMatch(Character::isDigit);
+    }
+}
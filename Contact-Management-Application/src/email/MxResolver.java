@@ -0,0 +1,20 @@
+package email;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Looks up the mail exchangers of a domain.
+ * Implementations may query DNS or answer from local data for offline use and tests.
+ */
+public interface MxResolver {
+
+    /**
+     * Returns the mail exchangers of a domain.
+     *
+     * @param domain the ASCII (punycode) domain name
+     * @return the host names of the mail exchangers, empty if the domain accepts no mail
+     * @throws IOException if the lookup failed
+     */
+    List<String> lookupMx(String domain) throws IOException;
+}
@@ -0,0 +1,62 @@
+package email;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Resolver answering from a local table instead of DNS.
+ * Used for offline operation and tests; counts the lookups it receives.
+ */
+public class StubMxResolver implements MxResolver {
+
+    /** Mail exchangers by domain */
+    private final Map<String, List<String>> records = new ConcurrentHashMap<>();
+
+    /** Whether domains without a record accept mail */
+    private final boolean acceptUnknown;
+
+    /** Number of lookups */
+    private final AtomicLong lookups = new AtomicLong();
+
+    /**
+     * Constructor for StubMxResolver.
+     *
+     * @param acceptUnknown true if domains without a record should resolve to a mail exchanger
+     */
+    public StubMxResolver(boolean acceptUnknown) {
+        this.acceptUnknown = acceptUnknown;
+    }
+
+    /**
+     * Sets the mail exchangers of a domain.
+     *
+     * @param domain the domain name
+     * @param hosts the host names of the mail exchangers, empty if the domain accepts no mail
+     * @return this resolver
+     */
+    public StubMxResolver put(String domain, List<String> hosts) {
+        this.records.put(domain, List.copyOf(hosts));
+        return this;
+    }
+
+    @Override
+    public List<String> lookupMx(String domain) {
+        this.lookups.incrementAndGet();
+        List<String> hosts = this.records.get(domain);
+        if (hosts != null) {
+            return hosts;
+        }
+        return this.acceptUnknown ? List.of("mx." + domain) : List.of();
+    }
+
+    /**
+     * Returns the number of lookups received so far.
+     *
+     * @return the number of lookups
+     */
+    public long getLookupCount() {
+        return this.lookups.get();
+    }
+}
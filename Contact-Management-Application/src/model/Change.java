@@ -0,0 +1,149 @@
+package model;
+
+import java.util.List;
+
+/**
+ * Immutable record of a single change of a contact list.
+ * A PUT change carries the full state of the contact, a DELETE change is a tombstone.
+ */
+public final class Change {
+
+    /**
+     * Type of a change.
+     */
+    public enum Type {
+        /** The contact was added or replaced */
+        PUT,
+        /** The contact was deleted */
+        DELETE
+    }
+
+    /** Type of the change */
+    private final Type type;
+
+    /** Identifier of the changed contact */
+    private final String contactId;
+
+    /** Version stamp of the change */
+    private final Stamp stamp;
+
+    /** First name, null for deletions */
+    private final String name;
+
+    /** Last name, null for deletions */
+    private final String lastName;
+
+    /** Email addresses, empty for deletions */
+    private final List<String> emails;
+
+    /**
+     * Constructor for Change.
+     *
+     * @param type the type of the change
+     * @param contactId the identifier of the changed contact
+     * @param stamp the version stamp of the change
+     * @param name the first name, null for deletions
+     * @param lastName the last name, null for deletions
+     * @param emails the email addresses, empty for deletions
+     */
+    public Change(Type type, String contactId, Stamp stamp, String name, String lastName, List<String> emails) {
+        this.type = type;
+        this.contactId = contactId;
+        this.stamp = stamp;
+        this.name = name;
+        this.lastName = lastName;
+        this.emails = List.copyOf(emails);
+    }
+
+    /**
+     * Creates a PUT change holding the current state of a contact.
+     *
+     * @param contact the changed contact
+     * @param stamp the version stamp of the change
+     * @return the change
+     */
+    static Change put(Contact contact, Stamp stamp) {
+        return new Change(Type.PUT, contact.getId(), stamp,
+                contact.getName(), contact.getLastName(), contact.getEmails());
+    }
+
+    /**
+     * Creates a DELETE change.
+     *
+     * @param contactId the identifier of the deleted contact
+     * @param stamp the version stamp of the change
+     * @return the change
+     */
+    static Change delete(String contactId, Stamp stamp) {
+        return new Change(Type.DELETE, contactId, stamp, null, null, List.of());
+    }
+
+    /**
+     * Creates a contact from a PUT change.
+     * Invalid email addresses are skipped.
+     *
+     * @return the contact with the identifier of the change
+     */
+    Contact toContact() {
+        Contact contact = new Contact(this.name, this.lastName);
+        contact.setId(this.contactId);
+        for (String email : this.emails) {
+            contact.addEmail(email);
+        }
+        return contact;
+    }
+
+    /**
+     * Returns the type of the change.
+     *
+     * @return the type
+     */
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * Returns the identifier of the changed contact.
+     *
+     * @return the contact identifier
+     */
+    public String getContactId() {
+        return this.contactId;
+    }
+
+    /**
+     * Returns the version stamp of the change.
+     *
+     * @return the stamp
+     */
+    public Stamp getStamp() {
+        return this.stamp;
+    }
+
+    /**
+     * Returns the first name.
+     *
+     * @return the first name, null for deletions
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the last name.
+     *
+     * @return the last name, null for deletions
+     */
+    public String getLastName() {
+        return this.lastName;
+    }
+
+    /**
+     * Returns the email addresses.
+     *
+     * @return the email addresses, empty for deletions
+     */
+    public List<String> getEmails() {
+        return this.emails;
+    }
+}
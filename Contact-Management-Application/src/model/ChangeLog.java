@@ -0,0 +1,84 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append-only log of the changes of a contact list.
+ * Every change gets a monotonically increasing sequence number, starting at 1.
+ * Peers remember the last sequence number they have seen and only ask for newer changes.
+ * Changes are discarded once every peer that asked for changes has acknowledged them.
+ */
+public class ChangeLog {
+
+    /** Changes that have not been truncated */
+    private final List<Change> changes = new ArrayList<>();
+
+    /** Sequence number of the first retained change */
+    private long firstSequence = 1;
+
+    /** Last acknowledged sequence number per peer replica */
+    private final Map<String, Long> acknowledged = new HashMap<>();
+
+    /**
+     * Appends a change to the log.
+     *
+     * @param change the change to be appended
+     * @return the sequence number of the change
+     */
+    long append(Change change) {
+        this.changes.add(change);
+        return getLastSequence();
+    }
+
+    /**
+     * Returns the sequence number of the latest change.
+     *
+     * @return the latest sequence number, 0 if no change was ever recorded
+     */
+    public long getLastSequence() {
+        return this.firstSequence + this.changes.size() - 1;
+    }
+
+    /**
+     * Returns all changes newer than the given sequence number.
+     *
+     * @param sequence the last sequence number the caller has seen
+     * @return the newer changes in log order, or null if some of them were already truncated
+     */
+    public List<Change> since(long sequence) {
+        if (sequence < this.firstSequence - 1) {
+            return null;
+        }
+        int from = (int) Math.min(sequence - this.firstSequence + 1, this.changes.size());
+        return new ArrayList<>(this.changes.subList(from, this.changes.size()));
+    }
+
+    /**
+     * Records that a peer has seen all changes up to a sequence number
+     * and discards the changes that every known peer has seen.
+     *
+     * @param replicaId the identifier of the peer replica
+     * @param sequence the last sequence number the peer has seen
+     */
+    public void acknowledge(String replicaId, long sequence) {
+        this.acknowledged.merge(replicaId, Math.min(sequence, getLastSequence()), Math::max);
+        truncate(Collections.min(this.acknowledged.values()));
+    }
+
+    /**
+     * Discards all changes up to and including the given sequence number.
+     * Should only be called once every peer has seen these changes;
+     * see {@link #acknowledge(String, long)}.
+     *
+     * @param sequence the last sequence number to be discarded
+     */
+    public void truncate(long sequence) {
+        int count = (int) Math.min(Math.max(0, sequence - this.firstSequence + 1), this.changes.size());
+        this.changes.subList(0, count).clear();
+        this.firstSequence += count;
+    }
+}
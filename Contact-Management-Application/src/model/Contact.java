@@ -1,5 +1,9 @@
 package model;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -15,16 +19,28 @@ import javafx.scene.image.Image;
  */
 public class Contact {
     
+    /** Unique identifier of the contact */
+    private String id;
+    
     /** First name of the contact */
     private String name;
     
     /** Last name of the contact */
     private String lastName;
     
-    /** Image of the contact */
-    private Image image;
+    /** Image of the contact, decoded on demand */
+    private ContactImage image;
+    
+    /** Pattern of a valid email address */
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^[\\w]{1,64}@[\\w]{1,64}\\.[\\w]{1,64}$");
+    
+    /** Shared array for contacts without email addresses */
+    private static final String[] NO_EMAILS = new String[0];
+    
+    /** Email addresses, used until an observable list is requested */
+    private String[] emails;
     
-    /** List of email addresses */
+    /** Observable list of email addresses, created on demand and then used instead of the array */
     private ObservableList<String> emailList;
     
     /**
@@ -58,11 +74,12 @@ public class Contact {
      * @param image the image of the contact
      */
     public Contact(String name, String lastName, String email, Image image) {
+        this.id = UUID.randomUUID().toString();
         this.name = name;
         this.lastName = lastName;
-        this.emailList = FXCollections.observableArrayList();
+        this.emails = NO_EMAILS;
         this.addEmail(email);
-        this.image = image;
+        this.image = ContactImage.of(image);
     }
     
     /**
@@ -73,10 +90,46 @@ public class Contact {
     public void setContact(Contact contact) {
         this.name = contact.name;
         this.lastName = contact.lastName;
+        this.emails = contact.emails;
         this.emailList = contact.emailList;
         this.image = contact.image;
     }
     
+    /**
+     * Creates a copy of the contact with the same identifier.
+     * Used for snapshots that are written in the background while the contact may be edited.
+     * 
+     * @return the copy
+     */
+    public Contact copy() {
+        Contact copy = new Contact(this.name, this.lastName);
+        copy.id = this.id;
+        copy.setEmails(getEmails().toArray(new String[0]));
+        copy.image = this.image;
+        return copy;
+    }
+    
+    /**
+     * Sets the identifier of the contact.
+     * Used by the contact list to keep the identifier stable when a contact is replaced.
+     * 
+     * @param id the identifier to be set
+     */
+    void setId(String id) {
+        this.id = id;
+    }
+    
+    /**
+     * Sets the email addresses without validating them.
+     * Used for contacts restored from a snapshot, whose emails were validated when they were added.
+     * 
+     * @param emails the email addresses, owned by the contact from now on
+     */
+    void setEmails(String[] emails) {
+        this.emails = emails.length == 0 ? NO_EMAILS : emails;
+        this.emailList = null;
+    }
+    
     /**
      * Sets the first name of the contact.
      * 
@@ -101,6 +154,16 @@ public class Contact {
      * @param image the image to be set
      */
     public void setImage(Image image) {
+        this.image = ContactImage.of(image);
+    }
+    
+    /**
+     * Sets the image reference of the contact.
+     * The image is not decoded until it is displayed.
+     * 
+     * @param image the image reference to be set, may be null
+     */
+    public void setContactImage(ContactImage image) {
         this.image = image;
     }
     
@@ -112,12 +175,37 @@ public class Contact {
      */
     public boolean addEmail(String email) {
         if (isValidEmail(email)) {
-            emailList.add(email);
+            if (this.emailList != null) {
+                this.emailList.add(email);
+            } else {
+                String[] grown = Arrays.copyOf(this.emails, this.emails.length + 1);
+                grown[this.emails.length] = email;
+                this.emails = grown;
+            }
             return true;
         }
         return false;
     }
     
+    /**
+     * Adds an alias address in another domain for each email of the contact,
+     * e.g. jane@example.com gets jane@example.org for the domain example.org.
+     * Aliases that already exist or are invalid are skipped.
+     * 
+     * @param domain the alias domain
+     * @return the number of added emails
+     */
+    public int addDomainAlias(String domain) {
+        int added = 0;
+        for (String email : List.copyOf(getEmails())) {
+            String alias = email.substring(0, email.indexOf('@') + 1) + domain;
+            if (!getEmails().contains(alias) && addEmail(alias)) {
+                added++;
+            }
+        }
+        return added;
+    }
+    
     /**
      * Removes an email from the contact's email list by index.
      * 
@@ -125,13 +213,31 @@ public class Contact {
      * @throws IndexOutOfBoundsException if the index is out of range
      */
     public void removeEmail(int index) {
-        if (index >= 0 && index < emailList.size()) {
-            emailList.remove(index);
+        if (index >= 0 && index < getEmailCount()) {
+            if (this.emailList != null) {
+                this.emailList.remove(index);
+            } else if (this.emails.length == 1) {
+                this.emails = NO_EMAILS;
+            } else {
+                String[] shrunk = new String[this.emails.length - 1];
+                System.arraycopy(this.emails, 0, shrunk, 0, index);
+                System.arraycopy(this.emails, index + 1, shrunk, index, shrunk.length - index);
+                this.emails = shrunk;
+            }
         } else {
-            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + emailList.size());
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getEmailCount());
         }
     }
     
+    /**
+     * Retrieves the unique identifier of the contact.
+     * 
+     * @return the identifier of the contact
+     */
+    public String getId() {
+        return this.id;
+    }
+    
     /**
      * Retrieves the first name of the contact.
      * 
@@ -152,13 +258,32 @@ public class Contact {
     
     /**
      * Retrieves the image of the contact.
+     * Decodes the image if it is not cached.
      * 
      * @return the image of the contact
      */
     public Image getImage() {
+        return this.image == null ? null : this.image.getImage();
+    }
+    
+    /**
+     * Retrieves the image reference of the contact without decoding the image.
+     * 
+     * @return the image reference or null if the contact has no image
+     */
+    public ContactImage getContactImage() {
         return this.image;
     }
     
+    /**
+     * Checks whether the contact has an image without decoding it.
+     * 
+     * @return true if the contact has an image
+     */
+    public boolean hasImage() {
+        return this.image != null;
+    }
+    
     /**
      * Retrieves an email from the contact's email list by index.
      * 
@@ -167,18 +292,46 @@ public class Contact {
      * @throws IndexOutOfBoundsException if the index is out of range
      */
     public String getEmail(int index) {
-        if (index < 0 || index >= emailList.size()) {
-            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + emailList.size());
+        if (index < 0 || index >= getEmailCount()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + getEmailCount());
+        }
+        return this.emailList != null ? this.emailList.get(index) : this.emails[index];
+    }
+    
+    /**
+     * Returns the number of email addresses.
+     * 
+     * @return the number of email addresses
+     */
+    public int getEmailCount() {
+        return this.emailList != null ? this.emailList.size() : this.emails.length;
+    }
+    
+    /**
+     * Returns a read-only view of the email addresses.
+     * Unlike {@link #getEmailList()} this does not create an observable list.
+     * 
+     * @return the email addresses
+     */
+    public List<String> getEmails() {
+        if (this.emailList != null) {
+            return Collections.unmodifiableList(this.emailList);
         }
-        return emailList.get(index);
+        return this.emails.length == 0 ? List.of() : Collections.unmodifiableList(Arrays.asList(this.emails));
     }
     
     /**
-     * Returns the list of email addresses.
+     * Returns the observable list of email addresses.
+     * The list is created on the first call and stays in use from then on;
+     * changes to it are changes of the contact's email addresses.
      * 
      * @return the list of email addresses
      */
     public ObservableList<String> getEmailList() {
+        if (this.emailList == null) {
+            this.emailList = FXCollections.observableArrayList(this.emails);
+            this.emails = null;
+        }
         return this.emailList;
     }
     
@@ -192,9 +345,7 @@ public class Contact {
         if (email == null) {
             return false;
         } else {
-            String regex = "^[\\w]{1,64}@[\\w]{1,64}\\.[\\w]{1,64}$";
-            Pattern pattern = Pattern.compile(regex);
-            Matcher matcher = pattern.matcher(email);
+            Matcher matcher = EMAIL_PATTERN.matcher(email);
             return email.length() >= 3
                     && email.length() <= 256
                     && matcher.matches();
@@ -0,0 +1,145 @@
+package model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary encoding of a page of contacts for persistence.
+ * Stores identifier, names, email addresses and the hash of a stored image.
+ * Images that only exist in memory are not encoded.
+ */
+public final class ContactCodec {
+
+    /**
+     * Not instantiable.
+     */
+    private ContactCodec() {
+    }
+
+    /**
+     * Encodes contacts.
+     *
+     * @param contacts the contacts to be encoded
+     * @return the encoded bytes
+     */
+    public static byte[] encode(List<Contact> contacts) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(contacts.size() * 96);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(contacts.size());
+            for (Contact contact : contacts) {
+                writeString(out, contact.getId());
+                writeString(out, contact.getName());
+                writeString(out, contact.getLastName());
+                List<String> emails = contact.getEmails();
+                out.writeInt(emails.size());
+                for (String email : emails) {
+                    writeString(out, email);
+                }
+                ContactImage image = contact.getContactImage();
+                writeString(out, image == null ? null : image.getHash());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes contacts.
+     *
+     * @param data the encoded bytes
+     * @param store the store resolving image hashes
+     * @return the decoded contacts
+     * @throws IOException if the data is malformed
+     */
+    public static List<Contact> decode(byte[] data, ImageStore store) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            int count = in.readInt();
+            List<Contact> contacts = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                Contact contact = restore(readString(in), readString(in), readString(in));
+                int emails = in.readInt();
+                for (int e = 0; e < emails; e++) {
+                    contact.addEmail(readString(in));
+                }
+                String hash = readString(in);
+                if (hash != null) {
+                    contact.setContactImage(store.get(hash));
+                }
+                contacts.add(contact);
+            }
+            return contacts;
+        } catch (RuntimeException e) {
+            throw new IOException("Malformed contact data", e);
+        }
+    }
+
+    /**
+     * Creates a contact with a persisted identifier.
+     *
+     * @param id the identifier of the contact
+     * @param name the first name of the contact
+     * @param lastName the last name of the contact
+     * @return the contact without emails and image
+     */
+    public static Contact restore(String id, String name, String lastName) {
+        Contact contact = new Contact(name, lastName);
+        contact.setId(id);
+        return contact;
+    }
+
+    /**
+     * Creates a contact with a persisted identifier and email addresses.
+     * The emails are taken as they are, since they were validated when they were added.
+     *
+     * @param id the identifier of the contact
+     * @param name the first name of the contact
+     * @param lastName the last name of the contact
+     * @param emails the email addresses, owned by the contact from now on
+     * @return the contact without image
+     */
+    public static Contact restore(String id, String name, String lastName, String[] emails) {
+        Contact contact = restore(id, name, lastName);
+        contact.setEmails(emails);
+        return contact;
+    }
+
+    /**
+     * Writes a nullable UTF-8 string with its length.
+     *
+     * @param out the target stream
+     * @param value the string, may be null
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * Reads a string written by {@link #writeString(DataOutputStream, String)}.
+     *
+     * @param in the source stream
+     * @return the string, may be null
+     */
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,99 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import javafx.scene.image.Image;
+
+/**
+ * Reference to the image of a contact.
+ * Images from the {@link ImageStore} are only identified by their hash
+ * and decoded when the pixels are actually needed.
+ */
+public final class ContactImage {
+
+    /** Store holding the image file, null for images that only exist in memory */
+    private final ImageStore store;
+
+    /** SHA-256 hash of the image file, null for images that only exist in memory */
+    private final String hash;
+
+    /** Decoded image that only exists in memory */
+    private final Image image;
+
+    /**
+     * Constructor for a stored image.
+     *
+     * @param store the store holding the image file
+     * @param hash the SHA-256 hash of the image file
+     */
+    ContactImage(ImageStore store, String hash) {
+        this.store = store;
+        this.hash = hash;
+        this.image = null;
+    }
+
+    /**
+     * Constructor for an image that only exists in memory.
+     *
+     * @param image the decoded image
+     */
+    private ContactImage(Image image) {
+        this.store = null;
+        this.hash = null;
+        this.image = image;
+    }
+
+    /**
+     * Wraps an already decoded image.
+     *
+     * @param image the decoded image, may be null
+     * @return the reference or null if the image is null
+     */
+    public static ContactImage of(Image image) {
+        return image == null ? null : new ContactImage(image);
+    }
+
+    /**
+     * Returns the SHA-256 hash of the image file.
+     *
+     * @return the hash or null if the image only exists in memory
+     */
+    public String getHash() {
+        return this.hash;
+    }
+
+    /**
+     * Opens the stored image file.
+     *
+     * @return the stream of the image file
+     * @throws IOException if the file cannot be read
+     * @throws IllegalStateException if the image only exists in memory
+     */
+    public InputStream openStream() throws IOException {
+        if (this.store == null) {
+            throw new IllegalStateException("Image is not stored");
+        }
+        return this.store.open(this.hash);
+    }
+
+    /**
+     * Returns the image in its original size, decoding it if necessary.
+     *
+     * @return the decoded image
+     */
+    public Image getImage() {
+        return this.image != null ? this.image : this.store.decode(this.hash, 0);
+    }
+
+    /**
+     * Returns the image scaled to fit into a square box, decoding it if necessary.
+     * Only the scaled pixels are kept in memory.
+     *
+     * @param size the size of the box
+     * @return the decoded image
+     */
+    public Image getImage(double size) {
+        return this.image != null ? this.image : this.store.decode(this.hash, size);
+    }
+}
@@ -1,6 +1,19 @@
 package model;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+
 import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
 import javafx.collections.ObservableList;
 
 /**
@@ -13,14 +26,99 @@ import javafx.collections.ObservableList;
 public class ContactList {
 
     /** List of contacts. */
-    private ObservableList<Contact> list;
+    private ContactObservableList list;
+
+    /** Read-only view of the list of contacts handed out to callers. */
+    private ObservableList<Contact> readOnlyList;
+
+    /** Contacts by their identifier. */
+    private Map<String, Contact> index;
+
+    /** List positions by contact identifier, null while they have to be rebuilt after a move. */
+    private Map<String, Integer> positions;
+
+    /** Modification counter, incremented on every change of the list. */
+    private volatile long version;
+
+    /** Identifier of this replica of the contact list. */
+    private String replicaId;
+
+    /** Lamport clock of this replica. */
+    private long clock;
+
+    /** Latest version stamp per contact identifier, kept for deleted contacts as tombstones. */
+    private Map<String, Stamp> stamps;
+
+    /** Log of all changes made through this contact list. */
+    private ChangeLog changeLog;
 
     /**
      * Constructor for ContactList.
      * Initializes the list of contacts.
      */
     public ContactList() {
-        this.list = FXCollections.observableArrayList();
+        this(UUID.randomUUID().toString());
+    }
+
+    /**
+     * Constructor for ContactList.
+     * Initializes the list of contacts as a replica with the given identifier.
+     * 
+     * @param replicaId the identifier of this replica
+     */
+    public ContactList(String replicaId) {
+        this.list = new ContactObservableList();
+        this.readOnlyList = FXCollections.unmodifiableObservableList(this.list);
+        this.index = new HashMap<>();
+        this.positions = new HashMap<>();
+        this.replicaId = replicaId;
+        this.stamps = new HashMap<>();
+        this.changeLog = new ChangeLog();
+        this.list.addListener(this::onListChanged);
+    }
+
+    /**
+     * Keeps the identifier index, the positions and the version up to date.
+     * Appends and replacements keep the positions of the other contacts, so their positions
+     * are updated directly; any other change moves contacts and the positions are rebuilt on next use.
+     * 
+     * @param change the change of the list
+     */
+    private void onListChanged(ListChangeListener.Change<? extends Contact> change) {
+        while (change.next()) {
+            for (Contact removed : change.getRemoved()) {
+                this.index.remove(removed.getId());
+            }
+            for (Contact added : change.getAddedSubList()) {
+                this.index.put(added.getId(), added);
+            }
+            updatePositions(change);
+        }
+        this.version++;
+    }
+
+    /**
+     * Updates the positions for one sub-change.
+     * 
+     * @param change the change of the list, positioned on the sub-change
+     */
+    private void updatePositions(ListChangeListener.Change<? extends Contact> change) {
+        if (this.positions == null || change.wasUpdated()) {
+            return;
+        }
+        boolean replaced = change.getRemovedSize() == change.getAddedSize();
+        boolean appended = !change.wasRemoved() && change.getTo() == this.list.size();
+        if (change.wasPermutated() || !replaced && !appended) {
+            this.positions = null;
+            return;
+        }
+        for (Contact removed : change.getRemoved()) {
+            this.positions.remove(removed.getId());
+        }
+        int position = change.getFrom();
+        for (Contact added : change.getAddedSubList()) {
+            this.positions.put(added.getId(), position++);
+        }
     }
 
     /**
@@ -30,7 +128,7 @@ public class ContactList {
      * @param lastName the last name of the contact
      */
     public void addContact(String name, String lastName) {
-        this.list.add(new Contact(name, lastName));
+        addContact(new Contact(name, lastName));
     }
 
     /**
@@ -40,6 +138,31 @@ public class ContactList {
      */
     public void addContact(Contact contact) {
         this.list.add(contact);
+        recordPut(contact);
+    }
+
+    /**
+     * Adds contacts to the list in one bulk operation.
+     * Listeners of the list are notified with a single change.
+     * 
+     * @param contacts the contacts to be added
+     */
+    public void addContacts(Collection<Contact> contacts) {
+        this.list.addAll(contacts);
+        for (Contact contact : contacts) {
+            recordPut(contact);
+        }
+    }
+
+    /**
+     * Adds contacts loaded from a file in one bulk operation without recording them in the change log.
+     * Restored contacts are the common starting state of the replicas, so only later changes are logged and synced.
+     * Listeners of the list are notified with a single change.
+     * 
+     * @param contacts the restored contacts
+     */
+    public void restoreContacts(Collection<Contact> contacts) {
+        this.list.addAll(contacts);
     }
 
     /**
@@ -50,12 +173,81 @@ public class ContactList {
      */
     public void delContact(int index) {
         if (index >= 0 && index < this.list.size()) {
-            this.list.remove(index);
+            Contact removed = this.list.remove(index);
+            recordDelete(removed.getId());
         } else {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.list.size());
         }
     }
 
+    /**
+     * Deletes all contacts with the given identifiers in one bulk operation.
+     * Listeners of the list are notified with a single change that only removes the ranges
+     * of the deleted contacts.
+     * 
+     * @param ids the identifiers of the contacts to be deleted
+     * @return the number of deleted contacts
+     */
+    public int removeAll(Collection<String> ids) {
+        int[] positions = positionsOf(ids);
+        List<String> removed = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            removed.add(this.list.get(position).getId());
+        }
+        this.list.removeAt(positions);
+        for (String id : removed) {
+            recordDelete(id);
+        }
+        return removed.size();
+    }
+
+    /**
+     * Applies an edit to all contacts with the given identifiers in one bulk operation.
+     * The contacts are edited in place; listeners of the list are notified with a single
+     * update change of the edited rows, so selections and positions stay as they are.
+     * 
+     * @param ids the identifiers of the contacts to be edited
+     * @param edit the edit applied to each contact
+     * @return the number of edited contacts
+     */
+    public int applyAll(Collection<String> ids, Consumer<Contact> edit) {
+        int[] positions = positionsOf(ids);
+        for (int position : positions) {
+            Contact contact = this.list.get(position);
+            edit.accept(contact);
+            recordPut(contact);
+        }
+        if (positions.length > 0) {
+            this.list.fireUpdated(positions);
+        }
+        return positions.length;
+    }
+
+    /**
+     * Returns the list positions of the contacts with the given identifiers.
+     * Unknown identifiers are ignored.
+     * 
+     * @param ids the identifiers of the contacts
+     * @return the positions in ascending order
+     */
+    private int[] positionsOf(Collection<String> ids) {
+        Set<Contact> contacts = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (String id : ids) {
+            Contact contact = this.index.get(id);
+            if (contact != null) {
+                contacts.add(contact);
+            }
+        }
+        int[] positions = new int[contacts.size()];
+        int count = 0;
+        for (int i = 0; i < this.list.size() && count < positions.length; i++) {
+            if (contacts.contains(this.list.get(i))) {
+                positions[count++] = i;
+            }
+        }
+        return positions;
+    }
+
     /**
      * Retrieves a contact from the list by index.
      * 
@@ -71,8 +263,84 @@ public class ContactList {
         }
     }
 
+    /**
+     * Retrieves a contact by its identifier.
+     * 
+     * @param id the identifier of the contact
+     * @return the contact or null if there is no contact with this identifier
+     */
+    public Contact getContactById(String id) {
+        return this.index.get(id);
+    }
+
+    /**
+     * Returns the index of the contact with the given identifier.
+     * 
+     * @param id the identifier of the contact
+     * @return the index of the contact or -1 if there is no contact with this identifier
+     */
+    public int indexOf(String id) {
+        if (this.positions == null) {
+            this.positions = new HashMap<>();
+            for (int i = 0; i < this.list.size(); i++) {
+                this.positions.put(this.list.get(i).getId(), i);
+            }
+        }
+        Integer position = this.positions.get(id);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Searches for contacts whose names or email addresses contain the query.
+     * The search is case-insensitive.
+     * 
+     * @param query the text to search for
+     * @return the matching contacts in list order
+     */
+    public List<Contact> search(String query) {
+        String needle = query.toLowerCase(Locale.ROOT);
+        List<Contact> result = new ArrayList<>();
+        for (Contact contact : this.list) {
+            if (matches(contact, needle)) {
+                result.add(contact);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Checks whether a contact matches a lower-case search query.
+     * 
+     * @param contact the contact to be checked
+     * @param needle the lower-case query
+     * @return true if a name or an email address contains the query
+     */
+    private static boolean matches(Contact contact, String needle) {
+        if (contains(contact.getName(), needle) || contains(contact.getLastName(), needle)) {
+            return true;
+        }
+        for (String email : contact.getEmails()) {
+            if (contains(email, needle)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Case-insensitive containment check that tolerates null values.
+     * 
+     * @param value the value to be searched
+     * @param needle the lower-case query
+     * @return true if the value contains the query
+     */
+    private static boolean contains(String value, String needle) {
+        return value != null && value.toLowerCase(Locale.ROOT).contains(needle);
+    }
+
     /**
      * Sets a contact at the specified index to a new contact.
+     * The new contact keeps the identifier of the contact it replaces.
      * 
      * @param index the index of the contact to be set
      * @param contact the contact to replace the existing contact
@@ -80,18 +348,138 @@ public class ContactList {
      */
     public void setContactAtIndex(int index, Contact contact) {
         if (index >= 0 && index < this.list.size()) {
+            contact.setId(this.list.get(index).getId());
             this.list.set(index, contact);
+            recordPut(contact);
         } else {
             throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.list.size());
         }
     }
     
     /**
-     * Returns the list of contacts.
+     * Returns a read-only view of the list of contacts.
+     * The view reflects all changes and notifies its listeners; contacts are added, removed
+     * and replaced through the methods of this class, so that every change is recorded in the change log.
      * 
-     * @return the list of contacts
+     * @return the unmodifiable list of contacts
      */
     public ObservableList<Contact> getList() {
-        return this.list;
+        return this.readOnlyList;
+    }
+
+    /**
+     * Returns the identifier of this replica.
+     * 
+     * @return the replica identifier
+     */
+    public String getReplicaId() {
+        return this.replicaId;
+    }
+
+    /**
+     * Returns the log of the changes made through this contact list.
+     * Changes applied from other replicas are logged as well, so they are passed on to further peers,
+     * but not back to the replica they came from.
+     * 
+     * @return the change log
+     */
+    public ChangeLog getChangeLog() {
+        return this.changeLog;
+    }
+
+    /**
+     * Returns the latest change of every contact that was changed through this contact list
+     * or by another replica, including tombstones of deleted contacts.
+     * Sent to peers instead of the log when the changes they have not seen were already truncated;
+     * applying it yields the same state as applying the whole log.
+     * 
+     * @return a PUT change per existing contact and a DELETE change per deleted contact
+     */
+    public List<Change> getLatestChanges() {
+        List<Change> changes = new ArrayList<>(this.stamps.size());
+        for (Map.Entry<String, Stamp> entry : this.stamps.entrySet()) {
+            Contact contact = this.index.get(entry.getKey());
+            changes.add(contact != null
+                    ? Change.put(contact, entry.getValue())
+                    : Change.delete(entry.getKey(), entry.getValue()));
+        }
+        return changes;
+    }
+
+    /**
+     * Applies a change received from another replica.
+     * Conflicting changes are resolved by last-writer-wins on the version stamps,
+     * so every replica ends up with the same state regardless of the order of delivery.
+     * Images are not part of a change and are kept for replaced contacts.
+     * 
+     * @param change the change to be applied
+     * @return true if the change was newer than the local state and has been applied
+     */
+    public boolean applyChange(Change change) {
+        Stamp stamp = change.getStamp();
+        this.clock = Math.max(this.clock, stamp.getClock());
+        Stamp current = this.stamps.get(change.getContactId());
+        if (current != null && current.compareTo(stamp) >= 0) {
+            return false;
+        }
+        this.stamps.put(change.getContactId(), stamp);
+        Contact existing = this.index.get(change.getContactId());
+        if (change.getType() == Change.Type.DELETE) {
+            if (existing != null) {
+                this.list.remove(indexOf(change.getContactId()));
+            }
+        } else {
+            Contact contact = change.toContact();
+            if (existing != null) {
+                contact.setContactImage(existing.getContactImage());
+                this.list.set(indexOf(change.getContactId()), contact);
+            } else {
+                this.list.add(contact);
+            }
+        }
+        this.changeLog.append(change);
+        return true;
+    }
+
+    /**
+     * Records the current state of a contact as a local change.
+     * 
+     * @param contact the added or replaced contact
+     */
+    private void recordPut(Contact contact) {
+        Stamp stamp = nextStamp(contact.getId());
+        this.changeLog.append(Change.put(contact, stamp));
+    }
+
+    /**
+     * Records the deletion of a contact as a local change.
+     * 
+     * @param id the identifier of the deleted contact
+     */
+    private void recordDelete(String id) {
+        Stamp stamp = nextStamp(id);
+        this.changeLog.append(Change.delete(id, stamp));
+    }
+
+    /**
+     * Advances the clock and stamps a local change of a contact.
+     * 
+     * @param id the identifier of the changed contact
+     * @return the new stamp of the contact
+     */
+    private Stamp nextStamp(String id) {
+        Stamp stamp = new Stamp(++this.clock, this.replicaId);
+        this.stamps.put(id, stamp);
+        return stamp;
+    }
+
+    /**
+     * Returns the modification counter of the list.
+     * The value changes whenever contacts are added, removed or replaced.
+     * 
+     * @return the current version of the list
+     */
+    public long getVersion() {
+        return this.version;
     }
 }
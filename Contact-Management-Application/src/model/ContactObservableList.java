@@ -0,0 +1,199 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javafx.collections.ModifiableObservableListBase;
+
+/**
+ * Observable list of contacts backing a {@link ContactList}.
+ * In addition to the usual list operations it reports in-place edits of contacts,
+ * replaces ranges and removes scattered positions, each as a single change that only covers the affected rows.
+ * Also used for the live member lists of smart groups.
+ */
+class ContactObservableList extends ModifiableObservableListBase<Contact> {
+
+    /** Contacts in list order */
+    private ArrayList<Contact> contacts = new ArrayList<>();
+
+    @Override
+    public Contact get(int index) {
+        return this.contacts.get(index);
+    }
+
+    @Override
+    public int size() {
+        return this.contacts.size();
+    }
+
+    @Override
+    protected void doAdd(int index, Contact contact) {
+        this.contacts.add(index, contact);
+    }
+
+    @Override
+    protected Contact doSet(int index, Contact contact) {
+        return this.contacts.set(index, contact);
+    }
+
+    @Override
+    protected Contact doRemove(int index) {
+        return this.contacts.remove(index);
+    }
+
+    /**
+     * Removes a range with one move of the following contacts instead of one per removed contact.
+     *
+     * @param from the first position to be removed
+     * @param to the position after the last one
+     */
+    @Override
+    protected void removeRange(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        List<Contact> range = this.contacts.subList(from, to);
+        beginChange();
+        try {
+            nextRemove(from, new ArrayList<>(range));
+            range.clear();
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Notifies the listeners that contacts have been edited in place.
+     * The listeners receive one update change with a sub-change per position.
+     *
+     * @param positions the positions of the edited contacts in ascending order
+     */
+    void fireUpdated(int[] positions) {
+        beginChange();
+        try {
+            for (int position : positions) {
+                nextUpdate(position);
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Replaces a range of contacts with other contacts.
+     * The listeners receive a single change.
+     *
+     * @param from the first position to be replaced
+     * @param to the position after the last one
+     * @param contacts the contacts to be inserted at the first position
+     */
+    void replace(int from, int to, List<Contact> contacts) {
+        beginChange();
+        try {
+            remove(from, to);
+            addAll(from, contacts);
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Applies several replacements and in-place edits as a single change.
+     * The contacts are copied once into their new order, however many ranges are replaced.
+     *
+     * @param replacements the replaced ranges in ascending order of their positions before the change,
+     *        not overlapping
+     * @param updated the positions of contacts edited in place after the change in ascending order
+     */
+    void apply(List<Replacement> replacements, int[] updated) {
+        beginChange();
+        try {
+            if (!replacements.isEmpty()) {
+                ArrayList<Contact> result = new ArrayList<>(this.contacts.size());
+                int read = 0;
+                for (Replacement replacement : replacements) {
+                    result.addAll(this.contacts.subList(read, replacement.from));
+                    int position = result.size();
+                    if (replacement.removed > 0) {
+                        nextRemove(position, new ArrayList<>(
+                                this.contacts.subList(replacement.from, replacement.from + replacement.removed)));
+                    }
+                    if (!replacement.added.isEmpty()) {
+                        nextAdd(position, position + replacement.added.size());
+                    }
+                    result.addAll(replacement.added);
+                    read = replacement.from + replacement.removed;
+                }
+                result.addAll(this.contacts.subList(read, this.contacts.size()));
+                this.contacts = result;
+            }
+            for (int position : updated) {
+                nextUpdate(position);
+            }
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Removes the contacts at the given positions.
+     * The remaining contacts are moved once and the listeners receive one change
+     * with a sub-change per range of consecutive positions.
+     *
+     * @param positions the positions to be removed in ascending order
+     */
+    void removeAt(int[] positions) {
+        if (positions.length == 0) {
+            return;
+        }
+        beginChange();
+        try {
+            int removedBefore = 0;
+            int target = positions[0];
+            int start = 0;
+            while (start < positions.length) {
+                int end = start + 1;
+                while (end < positions.length && positions[end] == positions[end - 1] + 1) {
+                    end++;
+                }
+                int from = positions[start];
+                int to = positions[end - 1] + 1;
+                nextRemove(from - removedBefore, new ArrayList<>(this.contacts.subList(from, to)));
+                removedBefore += to - from;
+                // Moves the contacts up to the next removed range
+                int next = end < positions.length ? positions[end] : this.contacts.size();
+                for (int i = to; i < next; i++) {
+                    this.contacts.set(target++, this.contacts.get(i));
+                }
+                start = end;
+            }
+            this.contacts.subList(target, this.contacts.size()).clear();
+        } finally {
+            endChange();
+        }
+    }
+
+    /**
+     * Replacement of a range of contacts, see {@link ContactObservableList#apply(List, int[])}.
+     */
+    static final class Replacement {
+
+        /** First replaced position before the change */
+        final int from;
+
+        /** Number of removed contacts */
+        int removed;
+
+        /** Contacts inserted at the first position */
+        final List<Contact> added = new ArrayList<>();
+
+        /**
+         * Constructor for Replacement.
+         *
+         * @param from the first replaced position before the change
+         */
+        Replacement(int from) {
+            this.from = from;
+        }
+    }
+}
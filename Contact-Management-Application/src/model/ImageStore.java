@@ -0,0 +1,260 @@
+package model;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javafx.scene.image.Image;
+
+/**
+ * Content-addressed store for contact images.
+ * Every image file is stored once under the SHA-256 hash of its bytes,
+ * so contacts with identical photos share the same file.
+ * Decoded images are only held through soft references and can be reclaimed under memory pressure.
+ */
+public class ImageStore {
+
+    /** Default store in the user's home directory */
+    private static ImageStore defaultStore;
+
+    /** Form of a hash: SHA-256 as 64 lowercase hex digits */
+    private static final Pattern HASH = Pattern.compile("[0-9a-f]{64}");
+
+    /** Root directory of the store */
+    private final Path root;
+
+    /** Decoded images by hash and requested size */
+    private final Map<String, DecodedImage> decoded = new HashMap<>();
+
+    /** Queue of the decoded images reclaimed by the garbage collector */
+    private final ReferenceQueue<Image> reclaimed = new ReferenceQueue<>();
+
+    /** Image references by hash, so contacts with the same photo share one instance */
+    private final Map<String, ContactImage> references = new HashMap<>();
+
+    /**
+     * Constructor for ImageStore.
+     *
+     * @param root the root directory of the store, created on the first write
+     */
+    public ImageStore(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Returns the default store located in ~/.contactapp/images.
+     *
+     * @return the default store
+     */
+    public static synchronized ImageStore getDefault() {
+        if (defaultStore == null) {
+            defaultStore = new ImageStore(Paths.get(System.getProperty("user.home"), ".contactapp", "images"));
+        }
+        return defaultStore;
+    }
+
+    /**
+     * Adds an image file to the store.
+     * The file is hashed while it is copied; if an identical image is already stored,
+     * the copy is discarded and the existing one is shared.
+     *
+     * @param file the image file
+     * @return the reference to the stored image
+     * @throws IOException if the file cannot be read or stored
+     */
+    public ContactImage put(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return put(in);
+        }
+    }
+
+    /**
+     * Adds an image to the store, hashing it while it is copied, e.g. an image restored from a backup.
+     *
+     * @param source the content of the image file, not closed
+     * @return the reference to the stored image
+     * @throws IOException if the image cannot be read or stored
+     */
+    public ContactImage put(InputStream source) throws IOException {
+        Files.createDirectories(this.root);
+        Path temp = Files.createTempFile(this.root, "import", ".tmp");
+        try {
+            MessageDigest digest = newDigest();
+            try (InputStream in = new DigestInputStream(source, digest)) {
+                Files.copy(in, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String hash = toHex(digest.digest());
+            Path target = pathOf(hash);
+            if (!Files.exists(target)) {
+                Files.createDirectories(target.getParent());
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            }
+            return get(hash);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Returns the reference to a stored image.
+     *
+     * @param hash the SHA-256 hash of the image
+     * @return the shared reference to the image
+     * @throws IllegalArgumentException if the hash is not 64 lowercase hex digits
+     */
+    public synchronized ContactImage get(String hash) {
+        checkHash(hash);
+        return this.references.computeIfAbsent(hash, h -> new ContactImage(this, h));
+    }
+
+    /**
+     * Checks whether an image is stored.
+     *
+     * @param hash the SHA-256 hash of the image
+     * @return true if the image file exists
+     */
+    public boolean contains(String hash) {
+        return Files.exists(pathOf(hash));
+    }
+
+    /**
+     * Opens the file of a stored image.
+     *
+     * @param hash the SHA-256 hash of the image
+     * @return the stream of the image file
+     * @throws IOException if the image is not stored or cannot be read
+     */
+    public InputStream open(String hash) throws IOException {
+        return Files.newInputStream(pathOf(hash));
+    }
+
+    /**
+     * Checks whether a string has the form of an image hash.
+     * Only such hashes are turned into paths, so a hash from a file cannot point outside the store.
+     *
+     * @param hash the string to be checked
+     * @return true if it consists of 64 lowercase hex digits
+     */
+    public static boolean isValidHash(String hash) {
+        return hash != null && HASH.matcher(hash).matches();
+    }
+
+    /**
+     * Returns the decoded image, decoding it if it is not cached.
+     *
+     * @param hash the SHA-256 hash of the image
+     * @param size the size of the box the image is scaled into, 0 for the original size
+     * @return the decoded image
+     */
+    synchronized Image decode(String hash, double size) {
+        removeReclaimed();
+        String key = size > 0 ? hash + "@" + size : hash;
+        DecodedImage ref = this.decoded.get(key);
+        Image image = ref == null ? null : ref.get();
+        if (image == null) {
+            String url = pathOf(hash).toUri().toString();
+            // Scaled images are decoded in the background, the view fills in once they are ready
+            image = size > 0 ? new Image(url, size, size, true, true, true) : new Image(url);
+            this.decoded.put(key, new DecodedImage(key, image, this.reclaimed));
+        }
+        return image;
+    }
+
+    /**
+     * Removes the cache entries of decoded images reclaimed by the garbage collector,
+     * so the cache does not keep a key for every image and size ever shown.
+     */
+    private void removeReclaimed() {
+        Reference<? extends Image> ref;
+        while ((ref = this.reclaimed.poll()) != null) {
+            DecodedImage image = (DecodedImage) ref;
+            // The key may already belong to a newer decoding of the same image
+            this.decoded.remove(image.key, image);
+        }
+    }
+
+    /**
+     * Returns the file of an image.
+     * Files are spread over subdirectories named after the first two hash characters.
+     *
+     * @param hash the SHA-256 hash of the image
+     * @return the path of the image file
+     * @throws IllegalArgumentException if the hash is not 64 lowercase hex digits
+     */
+    private Path pathOf(String hash) {
+        checkHash(hash);
+        return this.root.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    /**
+     * Rejects strings that are not image hashes.
+     *
+     * @param hash the hash to be checked
+     * @throws IllegalArgumentException if the hash is not 64 lowercase hex digits
+     */
+    private static void checkHash(String hash) {
+        if (!isValidHash(hash)) {
+            throw new IllegalArgumentException("Invalid image hash: " + hash);
+        }
+    }
+
+    /**
+     * Soft reference to a decoded image that knows its cache key.
+     */
+    private static final class DecodedImage extends SoftReference<Image> {
+
+        /** Cache key of the image */
+        private final String key;
+
+        /**
+         * Constructor for DecodedImage.
+         *
+         * @param key the cache key
+         * @param image the decoded image
+         * @param queue the queue notified when the image is reclaimed
+         */
+        DecodedImage(String key, Image image, ReferenceQueue<Image> queue) {
+            super(image, queue);
+            this.key = key;
+        }
+    }
+
+    /**
+     * Creates a SHA-256 digest.
+     *
+     * @return the digest
+     */
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Converts bytes to lower-case hex.
+     *
+     * @param bytes the bytes to be converted
+     * @return the hex string
+     */
+    private static String toHex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,249 @@
+package model;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * User-defined group of contacts given by a filter expression.
+ *
+ * An expression consists of conditions joined by AND, e.g.
+ * {@code domain = example.com AND lastName ^= M}.
+ * Fields: name, lastName, email, domain. Operators: = (equals), ^= (starts with),
+ * $= (ends with), *= (contains). Comparisons ignore case; values may be quoted.
+ * Conditions on email and domain match if any email address of the contact matches.
+ *
+ * The expression is compiled into a predicate once when the group is created.
+ */
+public final class SmartGroup {
+
+    /** Name of the group */
+    private final String name;
+
+    /** Filter expression of the group */
+    private final String expression;
+
+    /** Compiled filter */
+    private final Predicate<Contact> predicate;
+
+    /**
+     * Constructor for SmartGroup.
+     *
+     * @param name the name of the group
+     * @param expression the filter expression
+     * @param predicate the compiled filter
+     */
+    private SmartGroup(String name, String expression, Predicate<Contact> predicate) {
+        this.name = name;
+        this.expression = expression;
+        this.predicate = predicate;
+    }
+
+    /**
+     * Creates a group by compiling its filter expression.
+     *
+     * @param name the name of the group
+     * @param expression the filter expression
+     * @return the group
+     * @throws IllegalArgumentException if the name is empty or the expression is invalid
+     */
+    public static SmartGroup parse(String name, String expression) {
+        if (name == null || name.isBlank()) {
+            throw new IllegalArgumentException("The group needs a name.");
+        }
+        if (expression == null || expression.isBlank()) {
+            throw new IllegalArgumentException("The group needs a filter expression.");
+        }
+        Predicate<Contact> predicate = null;
+        for (String condition : expression.trim().split("(?i)\\s+AND\\s+")) {
+            Predicate<Contact> compiled = compileCondition(condition.trim());
+            predicate = predicate == null ? compiled : predicate.and(compiled);
+        }
+        return new SmartGroup(name.trim(), expression.trim(), predicate);
+    }
+
+    /**
+     * Compiles a single condition.
+     *
+     * @param condition the condition, e.g. lastName ^= M
+     * @return the compiled condition
+     */
+    private static Predicate<Contact> compileCondition(String condition) {
+        String[] operators = {"^=", "$=", "*=", "="};
+        for (String operator : operators) {
+            int pos = condition.indexOf(operator);
+            if (pos <= 0) {
+                continue;
+            }
+            String field = condition.substring(0, pos).trim();
+            String value = unquote(condition.substring(pos + operator.length()).trim()).toLowerCase(Locale.ROOT);
+            if (value.isEmpty()) {
+                throw new IllegalArgumentException("Missing value in condition: " + condition);
+            }
+            BiPredicate<String, String> test = compileOperator(operator);
+            Predicate<String> matches = text -> text != null && test.test(text.toLowerCase(Locale.ROOT), value);
+            switch (field.toLowerCase(Locale.ROOT)) {
+                case "name":
+                case "firstname":
+                    return contact -> matches.test(contact.getName());
+                case "lastname":
+                    return contact -> matches.test(contact.getLastName());
+                case "email":
+                    return anyEmail(email -> email, matches);
+                case "domain":
+                    return anyEmail(email -> email.substring(email.lastIndexOf('@') + 1), matches);
+                default:
+                    throw new IllegalArgumentException("Unknown field in condition: " + condition);
+            }
+        }
+        throw new IllegalArgumentException("Missing operator in condition: " + condition);
+    }
+
+    /**
+     * Compiles a comparison operator.
+     *
+     * @param operator the operator
+     * @return the comparison of a lower-case text with a lower-case value
+     */
+    private static BiPredicate<String, String> compileOperator(String operator) {
+        switch (operator) {
+            case "^=":
+                return String::startsWith;
+            case "$=":
+                return String::endsWith;
+            case "*=":
+                return String::contains;
+            default:
+                return String::equals;
+        }
+    }
+
+    /**
+     * Creates a condition that holds if any email address of a contact matches.
+     *
+     * @param part extracts the compared part of an email address
+     * @param matches the test of the part
+     * @return the condition
+     */
+    private static Predicate<Contact> anyEmail(Function<String, String> part, Predicate<String> matches) {
+        return contact -> {
+            for (String email : contact.getEmails()) {
+                if (matches.test(part.apply(email))) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * Removes surrounding quotes from a value.
+     *
+     * @param value the value
+     * @return the value without quotes
+     */
+    private static String unquote(String value) {
+        if (value.length() >= 2 && (value.startsWith("\"") && value.endsWith("\"")
+                || value.startsWith("'") && value.endsWith("'"))) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    /**
+     * Checks whether a contact belongs to the group.
+     *
+     * @param contact the contact to be checked
+     * @return true if the contact matches the filter
+     */
+    public boolean test(Contact contact) {
+        return this.predicate.test(contact);
+    }
+
+    /**
+     * Returns the name of the group.
+     *
+     * @return the name
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Returns the filter expression of the group.
+     *
+     * @return the expression
+     */
+    public String getExpression() {
+        return this.expression;
+    }
+
+    /**
+     * Loads saved groups.
+     * Groups whose expressions no longer compile are skipped.
+     *
+     * @param file the file written by {@link #save(Path, List)}
+     * @return the groups in saved order, empty if the file does not exist
+     * @throws IOException if the file cannot be read
+     */
+    public static List<SmartGroup> load(Path file) throws IOException {
+        List<SmartGroup> groups = new ArrayList<>();
+        if (!Files.exists(file)) {
+            return groups;
+        }
+        Properties properties = new Properties();
+        try (Reader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(in);
+        }
+        for (int i = 0; properties.containsKey("group." + i + ".name"); i++) {
+            try {
+                groups.add(parse(properties.getProperty("group." + i + ".name"),
+                        properties.getProperty("group." + i + ".expression")));
+            } catch (IllegalArgumentException e) {
+                // Skips groups that cannot be compiled anymore
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Saves groups.
+     *
+     * @param file the target file
+     * @param groups the groups to be saved
+     * @throws IOException if the file cannot be written
+     */
+    public static void save(Path file, List<SmartGroup> groups) throws IOException {
+        Properties properties = new Properties();
+        for (int i = 0; i < groups.size(); i++) {
+            properties.setProperty("group." + i + ".name", groups.get(i).getName());
+            properties.setProperty("group." + i + ".expression", groups.get(i).getExpression());
+        }
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            properties.store(out, "Smart groups");
+        }
+    }
+
+    /**
+     * Returns a string representation of the group.
+     *
+     * @return the name of the group
+     */
+    @Override
+    public String toString() {
+        return this.name;
+    }
+}
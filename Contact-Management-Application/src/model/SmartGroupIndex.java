@@ -0,0 +1,424 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javafx.collections.FXCollections;
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+/**
+ * Keeps the memberships of smart groups up to date.
+ * Every group has a bitset over the positions in the contact list and a running member count.
+ * A change of the contact list is applied to every group in one pass: only the added and
+ * edited contacts are evaluated, the bits of the other positions are copied word by word
+ * into a new bitset, so each bitset is rebuilt once per change however many ranges it touches.
+ * Live member lists receive a single change per change of the contact list.
+ */
+public class SmartGroupIndex {
+
+    /** Contact list being indexed */
+    private final ContactList contactList;
+
+    /** Groups in display order */
+    private final ObservableList<SmartGroup> groups = FXCollections.observableArrayList();
+
+    /** Memberships per group */
+    private final Map<SmartGroup, Membership> members = new LinkedHashMap<>();
+
+    /** Live member lists of the groups that are observed */
+    private final Map<SmartGroup, ContactObservableList> memberLists = new HashMap<>();
+
+    /** Listeners notified after the memberships changed */
+    private final List<Runnable> listeners = new ArrayList<>();
+
+    /** Size of the contact list as seen by the index */
+    private int size;
+
+    /**
+     * Constructor for SmartGroupIndex.
+     *
+     * @param contactList the contact list to be indexed
+     */
+    public SmartGroupIndex(ContactList contactList) {
+        this.contactList = contactList;
+        this.size = contactList.getList().size();
+        contactList.getList().addListener(this::onListChanged);
+    }
+
+    /**
+     * Adds a group and evaluates it once over the whole list.
+     *
+     * @param group the group to be added
+     */
+    public void addGroup(SmartGroup group) {
+        BitSet bits = new BitSet(this.size);
+        List<Contact> list = this.contactList.getList();
+        for (int i = 0; i < this.size; i++) {
+            bits.set(i, group.test(list.get(i)));
+        }
+        this.members.put(group, new Membership(bits, bits.cardinality()));
+        this.groups.add(group);
+        fireChanged();
+    }
+
+    /**
+     * Removes a group.
+     *
+     * @param group the group to be removed
+     */
+    public void removeGroup(SmartGroup group) {
+        if (this.members.remove(group) != null) {
+            this.memberLists.remove(group);
+            this.groups.remove(group);
+            fireChanged();
+        }
+    }
+
+    /**
+     * Returns the groups.
+     *
+     * @return the groups in display order, read-only
+     */
+    public ObservableList<SmartGroup> getGroups() {
+        return FXCollections.unmodifiableObservableList(this.groups);
+    }
+
+    /**
+     * Returns the number of members of a group.
+     *
+     * @param group the group
+     * @return the number of contacts in the group
+     */
+    public int getCount(SmartGroup group) {
+        Membership membership = this.members.get(group);
+        return membership == null ? 0 : membership.count;
+    }
+
+    /**
+     * Returns the members of a group.
+     *
+     * @param group the group
+     * @return the contacts of the group in list order
+     */
+    public List<Contact> getMembers(SmartGroup group) {
+        Membership membership = this.members.get(group);
+        if (membership == null) {
+            return List.of();
+        }
+        BitSet bits = membership.bits;
+        List<Contact> list = this.contactList.getList();
+        List<Contact> result = new ArrayList<>(membership.count);
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            result.add(list.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * Returns a live list of the members of a group.
+     * The list is built once and then kept up to date from the changes of the contact list:
+     * members joining or leaving the group replace only their rows, and members edited in place
+     * are reported as updates, so a view showing the list keeps its selection.
+     *
+     * @param group the group
+     * @return the contacts of the group in list order, read-only
+     */
+    public ObservableList<Contact> observeMembers(SmartGroup group) {
+        ContactObservableList list = this.memberLists.get(group);
+        if (list == null) {
+            list = new ContactObservableList();
+            list.addAll(getMembers(group));
+            if (this.members.containsKey(group)) {
+                this.memberLists.put(group, list);
+            }
+        }
+        return FXCollections.unmodifiableObservableList(list);
+    }
+
+    /**
+     * Registers a listener notified after the memberships changed.
+     *
+     * @param listener the listener
+     */
+    public void addListener(Runnable listener) {
+        this.listeners.add(listener);
+    }
+
+    /**
+     * Removes a listener.
+     *
+     * @param listener the listener
+     */
+    public void removeListener(Runnable listener) {
+        this.listeners.remove(listener);
+    }
+
+    /**
+     * Updates the memberships from a change of the contact list.
+     *
+     * @param change the change of the list
+     */
+    private void onListChanged(ListChangeListener.Change<? extends Contact> change) {
+        List<SubChange> subChanges = new ArrayList<>();
+        int newSize = this.size;
+        while (change.next()) {
+            int from = change.getFrom();
+            if (change.wasUpdated()) {
+                subChanges.add(new SubChange(from, change.getTo() - from, change.getTo() - from, true));
+            } else if (change.wasPermutated()) {
+                // Re-evaluated like a replacement of the permutated range
+                subChanges.add(new SubChange(from, change.getTo() - from, change.getTo() - from, false));
+            } else {
+                subChanges.add(new SubChange(from, change.getRemovedSize(), change.getAddedSize(), false));
+                newSize += change.getAddedSize() - change.getRemovedSize();
+            }
+        }
+        for (Map.Entry<SmartGroup, Membership> entry : this.members.entrySet()) {
+            update(entry.getKey(), entry.getValue(), subChanges, newSize);
+        }
+        this.size = newSize;
+        if (!this.members.isEmpty()) {
+            fireChanged();
+        }
+    }
+
+    /**
+     * Applies the sub-changes of a list change to the membership of a group.
+     * Walks the old and the new positions together: unchanged ranges are copied, removed ranges
+     * are counted and added or edited positions are evaluated. The edits of the live member list
+     * are collected on the way and applied as one change.
+     *
+     * @param group the group
+     * @param membership the membership of the group
+     * @param subChanges the sub-changes in list order
+     * @param newSize the size of the list after the change
+     */
+    private void update(SmartGroup group, Membership membership, List<SubChange> subChanges, int newSize) {
+        List<Contact> list = this.contactList.getList();
+        ContactObservableList memberList = this.memberLists.get(group);
+        List<ContactObservableList.Replacement> replacements = new ArrayList<>();
+        List<Integer> updated = new ArrayList<>();
+        long[] oldWords = membership.bits.toLongArray();
+        long[] newWords = new long[(newSize + 63) >>> 6];
+        int read = 0;
+        int write = 0;
+        // Members before the write position in the new list, and the difference to the old list
+        int rank = 0;
+        int delta = 0;
+        for (SubChange subChange : subChanges) {
+            rank += copy(oldWords, read, newWords, write, subChange.from - write);
+            read += subChange.from - write;
+            write = subChange.from;
+            if (subChange.updated) {
+                for (int i = 0; i < subChange.added; i++) {
+                    boolean was = get(oldWords, read + i);
+                    Contact contact = list.get(write + i);
+                    boolean is = group.test(contact);
+                    if (memberList != null && was && is) {
+                        updated.add(rank);
+                    } else if (memberList != null && was) {
+                        replace(replacements, rank - delta, 1, null);
+                    } else if (memberList != null && is) {
+                        replace(replacements, rank - delta, 0, contact);
+                    }
+                    if (is) {
+                        newWords[(write + i) >>> 6] |= 1L << (write + i);
+                        rank++;
+                    }
+                    delta += (is ? 1 : 0) - (was ? 1 : 0);
+                }
+            } else {
+                int removedMembers = count(oldWords, read, subChange.removed);
+                if (memberList != null && removedMembers > 0) {
+                    replace(replacements, rank - delta, removedMembers, null);
+                }
+                int from = rank - delta + removedMembers;
+                for (int i = 0; i < subChange.added; i++) {
+                    Contact contact = list.get(write + i);
+                    if (group.test(contact)) {
+                        newWords[(write + i) >>> 6] |= 1L << (write + i);
+                        if (memberList != null) {
+                            replace(replacements, from, 0, contact);
+                        }
+                        rank++;
+                        delta++;
+                    }
+                }
+                delta -= removedMembers;
+            }
+            read += subChange.removed;
+            write += subChange.added;
+        }
+        rank += copy(oldWords, read, newWords, write, newSize - write);
+        membership.bits = BitSet.valueOf(newWords);
+        membership.count = rank;
+        if (memberList != null && (!replacements.isEmpty() || !updated.isEmpty())) {
+            memberList.apply(replacements, updated.stream().mapToInt(Integer::intValue).toArray());
+        }
+    }
+
+    /**
+     * Adds the removal or insertion of members to the replacements of a live member list.
+     * Continues the last replacement if it ends at the same position.
+     *
+     * @param replacements the replacements in ascending order
+     * @param from the position in the member list before the change
+     * @param removed the number of removed members
+     * @param added the inserted member, null if none
+     */
+    private static void replace(List<ContactObservableList.Replacement> replacements,
+            int from, int removed, Contact added) {
+        ContactObservableList.Replacement last = replacements.isEmpty() ? null : replacements.get(replacements.size() - 1);
+        if (last == null || last.from + last.removed != from) {
+            last = new ContactObservableList.Replacement(from);
+            replacements.add(last);
+        }
+        last.removed += removed;
+        if (added != null) {
+            last.added.add(added);
+        }
+    }
+
+    /**
+     * Copies a range of bits to another position in a new bitset whose bits there are still clear.
+     *
+     * @param source the words of the source bitset
+     * @param from the first source position
+     * @param target the words of the target bitset
+     * @param to the first target position
+     * @param length the number of bits
+     * @return the number of set bits copied
+     */
+    private static int copy(long[] source, int from, long[] target, int to, int length) {
+        int count = 0;
+        for (int i = 0; i < length; i += 64) {
+            int bits = Math.min(64, length - i);
+            long word = read(source, from + i, bits);
+            if (word != 0) {
+                int position = to + i;
+                target[position >>> 6] |= word << position;
+                if ((position & 63) + bits > 64) {
+                    target[(position >>> 6) + 1] |= word >>> (64 - (position & 63));
+                }
+                count += Long.bitCount(word);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Counts the set bits of a range.
+     *
+     * @param words the words of the bitset
+     * @param from the first position
+     * @param length the number of bits
+     * @return the number of set bits
+     */
+    private static int count(long[] words, int from, int length) {
+        int count = 0;
+        for (int i = 0; i < length; i += 64) {
+            count += Long.bitCount(read(words, from + i, Math.min(64, length - i)));
+        }
+        return count;
+    }
+
+    /**
+     * Reads up to 64 bits starting at any position.
+     *
+     * @param words the words of the bitset
+     * @param from the first position
+     * @param bits the number of bits, 1 to 64
+     * @return the bits, the first one in the lowest bit
+     */
+    private static long read(long[] words, int from, int bits) {
+        int index = from >>> 6;
+        int offset = from & 63;
+        long word = index < words.length ? words[index] >>> offset : 0;
+        if (offset != 0 && index + 1 < words.length) {
+            word |= words[index + 1] << (64 - offset);
+        }
+        return bits == 64 ? word : word & ((1L << bits) - 1);
+    }
+
+    /**
+     * Reads a single bit.
+     *
+     * @param words the words of the bitset
+     * @param position the position
+     * @return true if the bit is set
+     */
+    private static boolean get(long[] words, int position) {
+        int index = position >>> 6;
+        return index < words.length && (words[index] & (1L << position)) != 0;
+    }
+
+    /**
+     * Notifies the listeners.
+     */
+    private void fireChanged() {
+        for (Runnable listener : new ArrayList<>(this.listeners)) {
+            listener.run();
+        }
+    }
+
+    /**
+     * Membership bits and member count of a group.
+     */
+    private static final class Membership {
+
+        /** Membership bits over the list positions */
+        BitSet bits;
+
+        /** Number of set bits */
+        int count;
+
+        /**
+         * Constructor for Membership.
+         *
+         * @param bits the membership bits
+         * @param count the number of set bits
+         */
+        Membership(BitSet bits, int count) {
+            this.bits = bits;
+            this.count = count;
+        }
+    }
+
+    /**
+     * Sub-change of a list change, read once and applied to every group.
+     */
+    private static final class SubChange {
+
+        /** First position after the change */
+        final int from;
+
+        /** Number of removed contacts, or of edited contacts for an update */
+        final int removed;
+
+        /** Number of added contacts, or of edited contacts for an update */
+        final int added;
+
+        /** Whether the contacts were edited in place */
+        final boolean updated;
+
+        /**
+         * Constructor for SubChange.
+         *
+         * @param from the first position after the change
+         * @param removed the number of removed or edited contacts
+         * @param added the number of added or edited contacts
+         * @param updated whether the contacts were edited in place
+         */
+        SubChange(int from, int removed, int added, boolean updated) {
+            this.from = from;
+            this.removed = removed;
+            this.added = added;
+            this.updated = updated;
+        }
+    }
+}
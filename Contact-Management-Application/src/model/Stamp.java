@@ -0,0 +1,82 @@
+package model;
+
+import java.util.Objects;
+
+/**
+ * Version stamp of a contact change.
+ * Combines a Lamport clock with the identifier of the replica that made the change,
+ * so concurrent edits of the same contact are ordered the same way on every replica.
+ */
+public final class Stamp implements Comparable<Stamp> {
+
+    /** Lamport clock value of the change */
+    private final long clock;
+
+    /** Identifier of the replica that made the change */
+    private final String replicaId;
+
+    /**
+     * Constructor for Stamp.
+     *
+     * @param clock the Lamport clock value
+     * @param replicaId the identifier of the replica
+     */
+    public Stamp(long clock, String replicaId) {
+        this.clock = clock;
+        this.replicaId = Objects.requireNonNull(replicaId);
+    }
+
+    /**
+     * Returns the Lamport clock value.
+     *
+     * @return the clock value
+     */
+    public long getClock() {
+        return this.clock;
+    }
+
+    /**
+     * Returns the identifier of the replica that made the change.
+     *
+     * @return the replica identifier
+     */
+    public String getReplicaId() {
+        return this.replicaId;
+    }
+
+    /**
+     * Orders stamps by clock value, ties are broken by the replica identifier.
+     *
+     * @param other the stamp to compare with
+     * @return a negative value, zero or a positive value if this stamp is older, equal or newer
+     */
+    @Override
+    public int compareTo(Stamp other) {
+        int result = Long.compare(this.clock, other.clock);
+        return result != 0 ? result : this.replicaId.compareTo(other.replicaId);
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof Stamp)) {
+            return false;
+        }
+        Stamp other = (Stamp) obj;
+        return this.clock == other.clock && this.replicaId.equals(other.replicaId);
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(this.clock) * 31 + this.replicaId.hashCode();
+    }
+
+    /**
+     * Returns a string representation of the stamp.
+     *
+     * @return the clock value and the replica identifier
+     */
+    @Override
+    public String toString() {
+        return this.clock + "@" + this.replicaId;
+    }
+}
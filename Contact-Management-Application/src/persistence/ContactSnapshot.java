@@ -0,0 +1,1050 @@
+package persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import model.Contact;
+import model.ContactCodec;
+import model.ContactImage;
+import model.ImageStore;
+
+/**
+ * Compressed columnar snapshot of contacts for backups and for moving contacts between machines.
+ *
+ * Layout: a header (magic, version, contact count, section count), a directory with offset,
+ * lengths, compression and checksum of every section, and the sections. Every section holds one
+ * column and is compressed on its own, so single columns can be read without touching the others:
+ * <ul>
+ * <li>identifiers, as 16 uncompressed bytes per contact when all of them are UUIDs</li>
+ * <li>first names and last names, dictionary encoded</li>
+ * <li>emails: the number of emails per contact as varints, i.e. the deltas of the contact to
+ * email mapping, followed by the local parts and the dictionary encoded domains</li>
+ * <li>image hashes, dictionary encoded and kept apart from the text columns</li>
+ * <li>image data: the hash, file offset and length of every referenced image file</li>
+ * </ul>
+ * The image files follow the sections, every one once and uncompressed since image formats
+ * are compressed already. They are streamed from the image store when writing and into the
+ * target image store when reading, so they never have to fit into memory together.
+ * Dictionaries are ordered by frequency, so the codes of common values fit into one byte.
+ * Sections are compressed with the fastest deflate level, which keeps writing and reading
+ * dominated by the encoding rather than the compression.
+ */
+public final class ContactSnapshot {
+
+    /** Magic number at the start of the file */
+    private static final int MAGIC = 0x434D5353;
+
+    /** Format version */
+    private static final byte VERSION = 2;
+
+    /** Length of the header in bytes: magic, version, contact count and section count */
+    private static final int HEADER_LENGTH = 4 + 1 + 4 + 4;
+
+    /** Length of a directory entry: section, compression, offset, compressed and raw length, checksum */
+    private static final int ENTRY_LENGTH = 1 + 1 + 8 + 4 + 4 + 4;
+
+    /** Compression of a section that is stored as it is */
+    private static final byte STORED = 0;
+
+    /** Compression of a deflated section */
+    private static final byte DEFLATED = 1;
+
+    /**
+     * Columns of a snapshot, in file order.
+     */
+    public enum Column {
+        /** Identifiers of the contacts */
+        IDS,
+        /** First names */
+        FIRST_NAMES,
+        /** Last names */
+        LAST_NAMES,
+        /** Email addresses */
+        EMAILS,
+        /** Hashes of the images in the image store */
+        IMAGES,
+        /** Locations of the referenced image files */
+        IMAGE_DATA
+    }
+
+    /**
+     * Not instantiable.
+     */
+    private ContactSnapshot() {
+    }
+
+    /**
+     * Writes a snapshot of contacts.
+     * The text columns are encoded and compressed in parallel, then the image files are streamed
+     * from the stores of the contact images. The file is written to a temporary file first and then
+     * moved into place.
+     *
+     * @param file the target file
+     * @param contacts the contacts to be written
+     * @throws IOException if writing fails or a referenced image cannot be read
+     */
+    public static void write(Path file, List<Contact> contacts) throws IOException {
+        Column[] columns = Column.values();
+        int images = Column.IMAGE_DATA.ordinal();
+        byte[][] raw = new byte[columns.length][];
+        byte[] compression = new byte[columns.length];
+        byte[][] compressed = new byte[columns.length][];
+        Arrays.stream(columns).filter(column -> column != Column.IMAGE_DATA).parallel().forEach(column -> {
+            byte[] bytes = encodeColumn(column, contacts);
+            raw[column.ordinal()] = bytes;
+            // Random UUIDs do not compress
+            if (column == Column.IDS && bytes.length > 0 && bytes[0] == 1) {
+                compression[column.ordinal()] = STORED;
+                compressed[column.ordinal()] = bytes;
+            } else {
+                compression[column.ordinal()] = DEFLATED;
+                compressed[column.ordinal()] = compress(bytes);
+            }
+        });
+
+        // A unique name in the same directory, so concurrent writers do not collide and the move stays atomic
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                long[] offsets = new long[columns.length];
+                channel.position(HEADER_LENGTH + columns.length * ENTRY_LENGTH);
+                for (int c = 0; c < images; c++) {
+                    offsets[c] = channel.position();
+                    writeFully(channel, ByteBuffer.wrap(compressed[c]));
+                }
+                raw[images] = writeImageFiles(channel, contacts);
+                compression[images] = DEFLATED;
+                compressed[images] = compress(raw[images]);
+                offsets[images] = channel.position();
+                writeFully(channel, ByteBuffer.wrap(compressed[images]));
+
+                ByteBuffer head = ByteBuffer.allocate(HEADER_LENGTH + columns.length * ENTRY_LENGTH);
+                head.putInt(MAGIC).put(VERSION).putInt(contacts.size()).putInt(columns.length);
+                for (Column column : columns) {
+                    int c = column.ordinal();
+                    CRC32 crc = new CRC32();
+                    crc.update(raw[c]);
+                    head.put((byte) c).put(compression[c]).putLong(offsets[c])
+                            .putInt(compressed[c].length).putInt(raw[c].length).putInt((int) crc.getValue());
+                }
+                head.flip();
+                channel.position(0);
+                writeFully(channel, head);
+                channel.force(true);
+            }
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * Appends every referenced image file once and encodes where they were written.
+     *
+     * @param channel the snapshot file, positioned after the text columns
+     * @param contacts the contacts
+     * @return the uncompressed image data column: the number of images, then hash, offset and length of each
+     * @throws IOException if writing fails or an image cannot be read
+     */
+    private static byte[] writeImageFiles(FileChannel channel, List<Contact> contacts) throws IOException {
+        Map<String, ContactImage> images = new LinkedHashMap<>();
+        for (Contact contact : contacts) {
+            ContactImage image = contact.getContactImage();
+            if (image != null && image.getHash() != null) {
+                images.putIfAbsent(image.getHash(), image);
+            }
+        }
+        Output out = new Output(16 + images.size() * 96);
+        out.writeVarint(images.size());
+        byte[] buffer = new byte[64 * 1024];
+        for (ContactImage image : images.values()) {
+            long offset = channel.position();
+            try (InputStream in = image.openStream()) {
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    writeFully(channel, ByteBuffer.wrap(buffer, 0, n));
+                }
+            }
+            out.writeString(image.getHash());
+            out.writeLong(offset);
+            out.writeLong(channel.position() - offset);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads all contacts of a snapshot, decompressing the columns in parallel.
+     * Images that are missing in the store are added to it from the image data of the snapshot.
+     *
+     * @param file the source file
+     * @param store the store resolving image hashes
+     * @return the contacts in snapshot order
+     * @throws IOException if reading fails, the file is corrupted or an image cannot be stored
+     */
+    public static List<Contact> read(Path file, ImageStore store) throws IOException {
+        try (Reader reader = Reader.open(file)) {
+            Object[] columns = Arrays.stream(Column.values()).filter(column -> column != Column.IMAGE_DATA).parallel()
+                    .map(column -> {
+                        try {
+                            switch (column) {
+                                case IDS:
+                                    return reader.readIds();
+                                case FIRST_NAMES:
+                                    return reader.readFirstNames();
+                                case LAST_NAMES:
+                                    return reader.readLastNames();
+                                case EMAILS:
+                                    return reader.readEmails();
+                                default:
+                                    return reader.readImageHashes();
+                            }
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toArray();
+            String[] ids = (String[]) columns[Column.IDS.ordinal()];
+            String[] names = (String[]) columns[Column.FIRST_NAMES.ordinal()];
+            String[] lastNames = (String[]) columns[Column.LAST_NAMES.ordinal()];
+            String[][] emails = (String[][]) columns[Column.EMAILS.ordinal()];
+            String[] hashes = (String[]) columns[Column.IMAGES.ordinal()];
+            reader.restoreImages(store);
+
+            // Resolves every distinct image once
+            Map<String, ContactImage> images = new HashMap<>();
+            Contact[] contacts = new Contact[reader.getContactCount()];
+            for (int i = 0; i < contacts.length; i++) {
+                if (hashes[i] != null) {
+                    images.computeIfAbsent(hashes[i], store::get);
+                }
+            }
+            IntStream.range(0, contacts.length).parallel().forEach(i -> {
+                Contact contact = ContactCodec.restore(ids[i], names[i], lastNames[i], emails[i]);
+                if (hashes[i] != null) {
+                    contact.setContactImage(images.get(hashes[i]));
+                }
+                contacts[i] = contact;
+            });
+            return Arrays.asList(contacts);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Reader of single columns of a snapshot.
+     * Only the directory is read when opening; every column is read and decompressed on request,
+     * e.g. only the names to fill a list.
+     */
+    public static final class Reader implements AutoCloseable {
+
+        /** Open file */
+        private final FileChannel channel;
+
+        /** Number of contacts in the snapshot */
+        private final int contactCount;
+
+        /** File offset per column */
+        private final long[] offsets;
+
+        /** Compression per column */
+        private final byte[] compressions;
+
+        /** Compressed length per column */
+        private final int[] lengths;
+
+        /** Uncompressed length per column */
+        private final int[] rawLengths;
+
+        /** Checksum of the uncompressed column */
+        private final int[] checksums;
+
+        /**
+         * Constructor for Reader.
+         *
+         * @param channel the open file
+         * @param contactCount the number of contacts
+         */
+        private Reader(FileChannel channel, int contactCount) {
+            int columns = Column.values().length;
+            this.channel = channel;
+            this.contactCount = contactCount;
+            this.offsets = new long[columns];
+            this.compressions = new byte[columns];
+            this.lengths = new int[columns];
+            this.rawLengths = new int[columns];
+            this.checksums = new int[columns];
+        }
+
+        /**
+         * Opens a snapshot.
+         *
+         * @param file the file
+         * @return the reader
+         * @throws IOException if reading fails or the file is not a snapshot
+         */
+        public static Reader open(Path file) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                ByteBuffer header = readFully(channel, 0, HEADER_LENGTH);
+                if (header.getInt() != MAGIC) {
+                    throw new IOException("Not a contact snapshot");
+                }
+                if (header.get() != VERSION) {
+                    throw new IOException("Unsupported snapshot version");
+                }
+                int contactCount = header.getInt();
+                int sections = header.getInt();
+                if (contactCount < 0 || sections < 0 || sections > 255) {
+                    throw new IOException("Corrupted snapshot header");
+                }
+                Reader reader = new Reader(channel, contactCount);
+                Arrays.fill(reader.offsets, -1);
+                ByteBuffer directory = readFully(channel, HEADER_LENGTH, sections * ENTRY_LENGTH);
+                for (int i = 0; i < sections; i++) {
+                    int column = directory.get() & 0xFF;
+                    byte compression = directory.get();
+                    long offset = directory.getLong();
+                    int length = directory.getInt();
+                    int rawLength = directory.getInt();
+                    int checksum = directory.getInt();
+                    // Sections of unknown columns are skipped
+                    if (column < reader.offsets.length) {
+                        reader.offsets[column] = offset;
+                        reader.compressions[column] = compression;
+                        reader.lengths[column] = length;
+                        reader.rawLengths[column] = rawLength;
+                        reader.checksums[column] = checksum;
+                    }
+                }
+                return reader;
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Returns the number of contacts in the snapshot.
+         *
+         * @return the number of contacts
+         */
+        public int getContactCount() {
+            return this.contactCount;
+        }
+
+        /**
+         * Reads the identifiers.
+         *
+         * @return the identifier per contact
+         * @throws IOException if reading fails or the column is corrupted
+         */
+        public String[] readIds() throws IOException {
+            return decodeColumn(Column.IDS, in -> {
+                String[] ids = new String[this.contactCount];
+                if (in.readByte() == 1) {
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = new UUID(in.readLong(), in.readLong()).toString();
+                    }
+                } else {
+                    for (int i = 0; i < ids.length; i++) {
+                        ids[i] = in.readString();
+                    }
+                }
+                return ids;
+            });
+        }
+
+        /**
+         * Reads the first names.
+         *
+         * @return the first name per contact
+         * @throws IOException if reading fails or the column is corrupted
+         */
+        public String[] readFirstNames() throws IOException {
+            return decodeColumn(Column.FIRST_NAMES, in -> in.readDictionaryColumn(this.contactCount));
+        }
+
+        /**
+         * Reads the last names.
+         *
+         * @return the last name per contact
+         * @throws IOException if reading fails or the column is corrupted
+         */
+        public String[] readLastNames() throws IOException {
+            return decodeColumn(Column.LAST_NAMES, in -> in.readDictionaryColumn(this.contactCount));
+        }
+
+        /**
+         * Reads the email addresses.
+         *
+         * @return the email addresses per contact
+         * @throws IOException if reading fails or the column is corrupted
+         */
+        public String[][] readEmails() throws IOException {
+            return decodeColumn(Column.EMAILS, in -> {
+                String[][] emails = new String[this.contactCount][];
+                int total = 0;
+                for (int i = 0; i < emails.length; i++) {
+                    emails[i] = new String[in.readVarint()];
+                    total += emails[i].length;
+                }
+                String[] domains = in.readDictionaryColumn(total);
+                int next = 0;
+                for (String[] contactEmails : emails) {
+                    for (int e = 0; e < contactEmails.length; e++) {
+                        String local = in.readString();
+                        String domain = domains[next++];
+                        contactEmails[e] = domain == null ? local : local + '@' + domain;
+                    }
+                }
+                return emails;
+            });
+        }
+
+        /**
+         * Reads the image hashes.
+         *
+         * @return the image hash per contact, null for contacts without a stored image
+         * @throws IOException if reading fails or the column is corrupted
+         */
+        public String[] readImageHashes() throws IOException {
+            return decodeColumn(Column.IMAGES, in -> {
+                String[] hashes = in.readDictionaryColumn(this.contactCount);
+                for (String hash : hashes) {
+                    checkHash(hash == null ? null : hash, hash != null);
+                }
+                return hashes;
+            });
+        }
+
+        /**
+         * Adds the referenced image files that a store does not have yet.
+         * Every file is streamed from the snapshot into the store and checked against its hash.
+         *
+         * @param store the target store
+         * @return the number of added images
+         * @throws IOException if reading fails, the column is corrupted or an image cannot be stored
+         */
+        public int restoreImages(ImageStore store) throws IOException {
+            if (this.offsets[Column.IMAGE_DATA.ordinal()] < 0) {
+                return 0;
+            }
+            long size = this.channel.size();
+            List<ImageLocation> images = decodeColumn(Column.IMAGE_DATA, in -> {
+                int count = in.readVarint();
+                List<ImageLocation> locations = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    ImageLocation location = new ImageLocation(in.readString(), in.readLong(), in.readLong());
+                    checkHash(location.hash, true);
+                    if (location.offset < 0 || location.length < 0 || location.offset > size - location.length) {
+                        throw new IllegalArgumentException("Image " + location.hash + " outside of the file");
+                    }
+                    locations.add(location);
+                }
+                return locations;
+            });
+            int added = 0;
+            for (ImageLocation image : images) {
+                if (store.contains(image.hash)) {
+                    continue;
+                }
+                try (InputStream in = new RangeInputStream(this.channel, image.offset, image.length)) {
+                    if (!store.put(in).getHash().equals(image.hash)) {
+                        throw new IOException("Corrupted image " + image.hash + " in snapshot");
+                    }
+                }
+                added++;
+            }
+            return added;
+        }
+
+        /**
+         * Reads, decompresses and decodes a column.
+         *
+         * @param column the column
+         * @param decoder the decoder of the uncompressed column
+         * @return the decoded column
+         * @throws IOException if reading fails or the column is corrupted
+         */
+        private <T> T decodeColumn(Column column, ColumnDecoder<T> decoder) throws IOException {
+            int c = column.ordinal();
+            if (this.offsets[c] < 0) {
+                throw new IOException("Snapshot has no column " + column);
+            }
+            byte[] bytes = readFully(this.channel, this.offsets[c], this.lengths[c]).array();
+            byte[] raw;
+            if (this.compressions[c] == DEFLATED) {
+                raw = decompress(bytes, this.rawLengths[c]);
+            } else if (this.compressions[c] == STORED && bytes.length == this.rawLengths[c]) {
+                raw = bytes;
+            } else {
+                throw new IOException("Unsupported compression of snapshot column " + column);
+            }
+            CRC32 crc = new CRC32();
+            crc.update(raw);
+            if ((int) crc.getValue() != this.checksums[c]) {
+                throw new IOException("Corrupted snapshot column " + column);
+            }
+            try {
+                return decoder.decode(new Input(raw));
+            } catch (RuntimeException e) {
+                throw new IOException("Malformed snapshot column " + column, e);
+            }
+        }
+
+        /**
+         * Closes the file.
+         *
+         * @throws IOException if closing fails
+         */
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Rejects image hashes that could not have been written by {@link ImageStore}.
+     * Hashes become paths in the store, so a crafted snapshot must not be able to point outside of it.
+     *
+     * @param hash the hash read from the snapshot
+     * @param required whether there must be a hash
+     * @throws IllegalArgumentException if the hash is not 64 lowercase hex digits
+     */
+    private static void checkHash(String hash, boolean required) {
+        if (required && !ImageStore.isValidHash(hash)) {
+            throw new IllegalArgumentException("Invalid image hash");
+        }
+    }
+
+    /**
+     * Location of an image file in a snapshot.
+     */
+    private static final class ImageLocation {
+
+        /** SHA-256 hash of the image */
+        final String hash;
+
+        /** File offset of the image */
+        final long offset;
+
+        /** Length of the image file */
+        final long length;
+
+        /**
+         * Constructor for ImageLocation.
+         *
+         * @param hash the SHA-256 hash of the image
+         * @param offset the file offset
+         * @param length the length of the image file
+         */
+        ImageLocation(String hash, long offset, long length) {
+            this.hash = hash;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+
+    /**
+     * Stream over a range of a file, reading at absolute positions so the channel can be shared.
+     */
+    private static final class RangeInputStream extends InputStream {
+
+        /** Open file */
+        private final FileChannel channel;
+
+        /** Next position to read */
+        private long position;
+
+        /** Position after the range */
+        private final long end;
+
+        /**
+         * Constructor for RangeInputStream.
+         *
+         * @param channel the open file
+         * @param offset the start of the range
+         * @param length the length of the range
+         */
+        RangeInputStream(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.position = offset;
+            this.end = offset + length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (this.position >= this.end) {
+                return -1;
+            }
+            if (length == 0) {
+                return 0;
+            }
+            ByteBuffer target = ByteBuffer.wrap(buffer, offset, (int) Math.min(length, this.end - this.position));
+            int n = this.channel.read(target, this.position);
+            if (n < 0) {
+                throw new IOException("Truncated contact snapshot");
+            }
+            this.position += n;
+            return n;
+        }
+    }
+
+    /**
+     * Decoder of an uncompressed column.
+     */
+    @FunctionalInterface
+    private interface ColumnDecoder<T> {
+
+        /**
+         * Decodes a column.
+         *
+         * @param in the uncompressed column
+         * @return the decoded column
+         */
+        T decode(Input in);
+    }
+
+    /**
+     * Encodes a column of the contacts.
+     *
+     * @param column the column
+     * @param contacts the contacts
+     * @return the uncompressed column
+     */
+    private static byte[] encodeColumn(Column column, List<Contact> contacts) {
+        Output out = new Output(contacts.size() * 8);
+        switch (column) {
+            case IDS:
+                encodeIds(out, contacts);
+                break;
+            case FIRST_NAMES:
+                out.writeDictionaryColumn(contacts, Contact::getName);
+                break;
+            case LAST_NAMES:
+                out.writeDictionaryColumn(contacts, Contact::getLastName);
+                break;
+            case EMAILS:
+                encodeEmails(out, contacts);
+                break;
+            case IMAGES:
+                out.writeDictionaryColumn(contacts,
+                        contact -> contact.getContactImage() == null ? null : contact.getContactImage().getHash());
+                break;
+            default:
+                throw new IllegalArgumentException("Column " + column + " is written with the image files");
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Encodes the identifiers, as two longs each if all of them are UUIDs.
+     *
+     * @param out the target
+     * @param contacts the contacts
+     */
+    private static void encodeIds(Output out, List<Contact> contacts) {
+        UUID[] uuids = new UUID[contacts.size()];
+        for (int i = 0; i < uuids.length; i++) {
+            String id = contacts.get(i).getId();
+            try {
+                uuids[i] = UUID.fromString(id);
+            } catch (IllegalArgumentException e) {
+                uuids = null;
+                break;
+            }
+            // Only the canonical form survives the round trip
+            if (!uuids[i].toString().equals(id)) {
+                uuids = null;
+                break;
+            }
+        }
+        if (uuids != null) {
+            out.writeByte(1);
+            for (UUID uuid : uuids) {
+                out.writeLong(uuid.getMostSignificantBits());
+                out.writeLong(uuid.getLeastSignificantBits());
+            }
+        } else {
+            out.writeByte(0);
+            for (Contact contact : contacts) {
+                out.writeString(contact.getId());
+            }
+        }
+    }
+
+    /**
+     * Encodes the email addresses: the counts per contact, the dictionary encoded domains
+     * and the local parts.
+     *
+     * @param out the target
+     * @param contacts the contacts
+     */
+    private static void encodeEmails(Output out, List<Contact> contacts) {
+        List<String> emails = new ArrayList<>(contacts.size());
+        List<String> domains = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            out.writeVarint(contact.getEmailCount());
+            for (String email : contact.getEmails()) {
+                int at = email.lastIndexOf('@');
+                emails.add(email);
+                domains.add(at < 0 ? null : email.substring(at + 1));
+            }
+        }
+        out.writeDictionaryColumn(domains, Function.identity());
+        for (String email : emails) {
+            byte[] utf8 = email.getBytes(StandardCharsets.UTF_8);
+            // The local part ends at the last @, which is a single byte in UTF-8
+            int at = utf8.length - 1;
+            while (at >= 0 && utf8[at] != '@') {
+                at--;
+            }
+            out.writeBytes(utf8, at < 0 ? utf8.length : at);
+        }
+    }
+
+    /**
+     * Compresses a column with the fastest deflate level.
+     *
+     * @param raw the uncompressed column
+     * @return the compressed column
+     */
+    private static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(raw.length / 4 + 64);
+            byte[] buffer = new byte[64 * 1024];
+            while (!deflater.finished()) {
+                out.write(buffer, 0, deflater.deflate(buffer));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses a column.
+     *
+     * @param compressed the compressed column
+     * @param rawLength the length of the uncompressed column
+     * @return the uncompressed column
+     * @throws IOException if the column is corrupted
+     */
+    private static byte[] decompress(byte[] compressed, int rawLength) throws IOException {
+        if (rawLength < 0) {
+            throw new IOException("Corrupted snapshot directory");
+        }
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(compressed);
+            byte[] raw = new byte[rawLength];
+            int length = 0;
+            while (length < rawLength && !inflater.finished()) {
+                int n = inflater.inflate(raw, length, rawLength - length);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != rawLength || !inflater.finished()) {
+                throw new IOException("Corrupted snapshot column");
+            }
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted snapshot column", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Growable buffer for writing a column.
+     */
+    private static final class Output {
+
+        /** Written bytes */
+        private byte[] bytes;
+
+        /** Number of written bytes */
+        private int length;
+
+        /**
+         * Constructor for Output.
+         *
+         * @param capacity the initial capacity
+         */
+        Output(int capacity) {
+            this.bytes = new byte[Math.max(16, capacity)];
+        }
+
+        /**
+         * Ensures space for more bytes.
+         *
+         * @param n the number of bytes to be written
+         */
+        private void ensure(int n) {
+            if (this.length + n > this.bytes.length) {
+                this.bytes = Arrays.copyOf(this.bytes, Math.max(this.length + n, this.bytes.length * 2));
+            }
+        }
+
+        /**
+         * Writes a byte.
+         *
+         * @param value the byte
+         */
+        void writeByte(int value) {
+            ensure(1);
+            this.bytes[this.length++] = (byte) value;
+        }
+
+        /**
+         * Writes a long in big-endian order.
+         *
+         * @param value the long
+         */
+        void writeLong(long value) {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                this.bytes[this.length++] = (byte) (value >>> shift);
+            }
+        }
+
+        /**
+         * Writes a non-negative int as varint, 7 bits per byte.
+         *
+         * @param value the value
+         */
+        void writeVarint(int value) {
+            ensure(5);
+            while ((value & ~0x7F) != 0) {
+                this.bytes[this.length++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            this.bytes[this.length++] = (byte) value;
+        }
+
+        /**
+         * Writes a UTF-8 string with its length.
+         *
+         * @param value the string, not null
+         */
+        void writeString(String value) {
+            byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+            writeBytes(utf8, utf8.length);
+        }
+
+        /**
+         * Writes the start of a byte array with its length, read back by {@link Input#readString()}.
+         *
+         * @param value the bytes
+         * @param count the number of bytes to be written
+         */
+        void writeBytes(byte[] value, int count) {
+            writeVarint(count);
+            ensure(count);
+            System.arraycopy(value, 0, this.bytes, this.length, count);
+            this.length += count;
+        }
+
+        /**
+         * Writes a dictionary encoded column: the distinct values by descending frequency,
+         * then the code of every value, 0 for null.
+         *
+         * @param items the items
+         * @param value the value of an item
+         */
+        <T> void writeDictionaryColumn(List<T> items, Function<T, String> value) {
+            Map<String, int[]> frequencies = new HashMap<>();
+            for (T item : items) {
+                String v = value.apply(item);
+                if (v != null) {
+                    frequencies.computeIfAbsent(v, k -> new int[1])[0]++;
+                }
+            }
+            List<Map.Entry<String, int[]>> dictionary = new ArrayList<>(frequencies.entrySet());
+            dictionary.sort((a, b) -> Integer.compare(b.getValue()[0], a.getValue()[0]));
+            writeVarint(dictionary.size());
+            for (int i = 0; i < dictionary.size(); i++) {
+                Map.Entry<String, int[]> entry = dictionary.get(i);
+                writeString(entry.getKey());
+                // Reuses the counter as code
+                entry.getValue()[0] = i + 1;
+            }
+            for (T item : items) {
+                String v = value.apply(item);
+                writeVarint(v == null ? 0 : frequencies.get(v)[0]);
+            }
+        }
+
+        /**
+         * Returns the written bytes.
+         *
+         * @return a copy of the written bytes
+         */
+        byte[] toByteArray() {
+            return Arrays.copyOf(this.bytes, this.length);
+        }
+    }
+
+    /**
+     * Reader of an uncompressed column.
+     */
+    private static final class Input {
+
+        /** Column bytes */
+        private final byte[] bytes;
+
+        /** Current position */
+        private int pos;
+
+        /**
+         * Constructor for Input.
+         *
+         * @param bytes the column bytes
+         */
+        Input(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        /**
+         * Reads a byte.
+         *
+         * @return the byte
+         */
+        byte readByte() {
+            return this.bytes[this.pos++];
+        }
+
+        /**
+         * Reads a long in big-endian order.
+         *
+         * @return the long
+         */
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (this.bytes[this.pos++] & 0xFF);
+            }
+            return value;
+        }
+
+        /**
+         * Reads a varint.
+         *
+         * @return the value
+         */
+        int readVarint() {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                byte b = this.bytes[this.pos++];
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    if (value < 0) {
+                        break;
+                    }
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("Malformed varint at " + this.pos);
+        }
+
+        /**
+         * Reads a string written by {@link Output#writeString(String)}.
+         *
+         * @return the string
+         */
+        String readString() {
+            int length = readVarint();
+            String value = new String(this.bytes, this.pos, length, StandardCharsets.UTF_8);
+            this.pos += length;
+            return value;
+        }
+
+        /**
+         * Reads a column written by {@link Output#writeDictionaryColumn(List, Function)}.
+         *
+         * @param count the number of values
+         * @return the values, sharing one instance per distinct value
+         */
+        String[] readDictionaryColumn(int count) {
+            String[] dictionary = new String[readVarint() + 1];
+            for (int i = 1; i < dictionary.length; i++) {
+                dictionary[i] = readString();
+            }
+            String[] values = new String[count];
+            for (int i = 0; i < count; i++) {
+                values[i] = dictionary[readVarint()];
+            }
+            return values;
+        }
+    }
+
+    /**
+     * Reads bytes at a position.
+     *
+     * @param channel the file
+     * @param position the position
+     * @param length the number of bytes
+     * @return the buffer, ready to be read
+     * @throws IOException if the file ends early
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        if (position < 0 || length < 0) {
+            throw new IOException("Corrupted snapshot directory");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of snapshot");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes a buffer completely.
+     *
+     * @param channel the file
+     * @param buffer the buffer
+     * @throws IOException if writing fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
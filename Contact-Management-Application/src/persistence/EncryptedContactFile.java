@@ -0,0 +1,722 @@
+package persistence;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.SecretKey;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.PBEKeySpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import model.Contact;
+import model.ContactCodec;
+import model.ImageStore;
+
+/**
+ * Encrypted contact file made of independently authenticated AES-GCM chunks.
+ *
+ * Layout: a plaintext header (magic, version, KDF iterations, salt, contacts per chunk),
+ * the encrypted chunks of contacts, an encrypted chunk index and a trailer pointing at the index.
+ * The key is derived from a password with PBKDF2 and a random salt per file, so every
+ * chunk can use its position as nonce. The header and the chunk position are authenticated
+ * with every chunk, so chunks cannot be swapped or moved between files.
+ *
+ * Chunks are encrypted and decrypted in parallel; a {@link Reader} decrypts only the chunks that are accessed.
+ */
+public final class EncryptedContactFile {
+
+    /** Magic number at the start and the end of the file */
+    private static final int MAGIC = 0x434D4145;
+
+    /** Format version */
+    private static final byte VERSION = 1;
+
+    /** Default number of contacts per chunk */
+    public static final int DEFAULT_CHUNK_SIZE = 4096;
+
+    /** PBKDF2 iterations of new files */
+    private static final int KDF_ITERATIONS = 210_000;
+
+    /** Length of the salt in bytes */
+    private static final int SALT_LENGTH = 16;
+
+    /** Length of the GCM nonce in bytes */
+    private static final int NONCE_LENGTH = 12;
+
+    /** Length of the GCM tag in bits */
+    private static final int TAG_BITS = 128;
+
+    /** Length of the header in bytes */
+    private static final int HEADER_LENGTH = 4 + 1 + 4 + SALT_LENGTH + 4;
+
+    /** Length of the trailer in bytes: index offset, index length and magic */
+    private static final int TRAILER_LENGTH = 8 + 4 + 4;
+
+    /** Chunk position used for the index */
+    private static final long INDEX_POSITION = -1;
+
+    /** Number of chunks encrypted at once; bounds the memory of writing and re-keying */
+    private static final int WINDOW = Runtime.getRuntime().availableProcessors() * 2;
+
+    /** Source of salts */
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    /**
+     * Not instantiable.
+     */
+    private EncryptedContactFile() {
+    }
+
+    /**
+     * Writes contacts to an encrypted file.
+     * The file is written to a temporary file first and then moved into place.
+     *
+     * @param file the target file
+     * @param contacts the contacts to be written
+     * @param password the password
+     * @throws IOException if writing fails
+     */
+    public static void write(Path file, List<Contact> contacts, char[] password) throws IOException {
+        write(file, contacts, password, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Writes contacts to an encrypted file.
+     *
+     * @param file the target file
+     * @param contacts the contacts to be written
+     * @param password the password
+     * @param chunkSize the number of contacts per chunk
+     * @throws IOException if writing fails
+     */
+    public static void write(Path file, List<Contact> contacts, char[] password, int chunkSize) throws IOException {
+        Header header = Header.create(chunkSize);
+        SecretKey key = deriveKey(password, header);
+        int chunks = (contacts.size() + chunkSize - 1) / chunkSize;
+        try (Writer writer = new Writer(file, header, key)) {
+            // Encrypts a window of chunks in parallel, then writes them in order
+            for (int first = 0; first < chunks; first += WINDOW) {
+                int start = first;
+                byte[][] encrypted = IntStream.range(start, Math.min(chunks, start + WINDOW)).parallel()
+                        .mapToObj(chunk -> {
+                            List<Contact> page = contacts.subList(chunk * chunkSize,
+                                    Math.min(contacts.size(), (chunk + 1) * chunkSize));
+                            return encrypt(key, header, chunk, ContactCodec.encode(page));
+                        })
+                        .toArray(byte[][]::new);
+                for (int i = 0; i < encrypted.length; i++) {
+                    int count = Math.min(contacts.size(), (start + i + 1) * chunkSize) - (start + i) * chunkSize;
+                    writer.writeChunk(encrypted[i], count);
+                }
+            }
+            writer.finish();
+        }
+    }
+
+    /**
+     * Reads all contacts of an encrypted file, decrypting the chunks in parallel.
+     *
+     * @param file the source file
+     * @param password the password
+     * @param store the store resolving image hashes
+     * @return the contacts in file order
+     * @throws IOException if reading fails, the password is wrong or the file was modified
+     */
+    public static List<Contact> readAll(Path file, char[] password, ImageStore store) throws IOException {
+        List<Contact> contacts = new ArrayList<>();
+        read(file, password, store, contacts::addAll);
+        return contacts;
+    }
+
+    /**
+     * Reads the contacts of an encrypted file chunk by chunk.
+     * A window of chunks is decrypted in parallel, then the chunks are passed on in file order,
+     * so the first contacts are available after the first window while memory stays bounded.
+     *
+     * @param file the source file
+     * @param password the password
+     * @param store the store resolving image hashes
+     * @param consumer the consumer of the contacts of each chunk, called on the calling thread
+     * @throws IOException if reading fails, the password is wrong or the file was modified
+     */
+    public static void read(Path file, char[] password, ImageStore store, Consumer<List<Contact>> consumer)
+            throws IOException {
+        try (Reader reader = Reader.open(file, password, store)) {
+            int chunks = reader.getChunkCount();
+            for (int first = 0; first < chunks; first += WINDOW) {
+                List<List<Contact>> pages = IntStream.range(first, Math.min(chunks, first + WINDOW)).parallel()
+                        .mapToObj(chunk -> {
+                            try {
+                                return reader.readChunk(chunk);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                        })
+                        .collect(Collectors.toList());
+                pages.forEach(consumer);
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Re-encrypts a file with a new password in the background.
+     * The chunks are streamed through a small window, so the contacts are never all in memory.
+     * The target replaces the source only after it has been completely written.
+     * Both passwords are cleared afterwards.
+     *
+     * @param file the file to be re-keyed
+     * @param oldPassword the current password
+     * @param newPassword the new password
+     * @param executor the executor running the job
+     * @return the future completing when the file was replaced
+     */
+    public static CompletableFuture<Void> rekeyAsync(Path file, char[] oldPassword, char[] newPassword,
+            Executor executor) {
+        return CompletableFuture.runAsync(() -> {
+            try {
+                rekey(file, oldPassword, newPassword);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                Arrays.fill(oldPassword, '\0');
+                Arrays.fill(newPassword, '\0');
+            }
+        }, executor);
+    }
+
+    /**
+     * Re-encrypts a file with a new password.
+     *
+     * @param file the file to be re-keyed
+     * @param oldPassword the current password
+     * @param newPassword the new password
+     * @throws IOException if reading or writing fails or the current password is wrong
+     */
+    public static void rekey(Path file, char[] oldPassword, char[] newPassword) throws IOException {
+        Reader reader = Reader.open(file, oldPassword, null);
+        Header header;
+        SecretKey key;
+        Writer writer;
+        try {
+            header = Header.create(reader.header.chunkSize);
+            key = deriveKey(newPassword, header);
+            writer = new Writer(file, header, key);
+        } catch (IOException | RuntimeException e) {
+            reader.close();
+            throw e;
+        }
+        try (writer) {
+            try (reader) {
+                int chunks = reader.getChunkCount();
+                for (int first = 0; first < chunks; first += WINDOW) {
+                    int start = first;
+                    byte[][] encrypted = IntStream.range(start, Math.min(chunks, start + WINDOW)).parallel()
+                            .mapToObj(chunk -> {
+                                try {
+                                    return encrypt(key, header, chunk, reader.decryptChunk(chunk));
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            })
+                            .toArray(byte[][]::new);
+                    for (int i = 0; i < encrypted.length; i++) {
+                        writer.writeChunk(encrypted[i], reader.counts[start + i]);
+                    }
+                }
+            }
+            // Replaces the file only after the reader has released it
+            writer.finish();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Lazy reader of an encrypted file.
+     * Only the chunk index is decrypted when opening; chunks are decrypted when accessed
+     * and the most recently used ones are cached.
+     */
+    public static final class Reader implements AutoCloseable {
+
+        /** Number of decoded chunks kept in memory */
+        private static final int CACHED_CHUNKS = 8;
+
+        /** Open file */
+        private final FileChannel channel;
+
+        /** Header of the file */
+        private final Header header;
+
+        /** Derived key */
+        private final SecretKey key;
+
+        /** Store resolving image hashes */
+        private final ImageStore store;
+
+        /** File offset per chunk */
+        private final long[] offsets;
+
+        /** Encrypted length per chunk */
+        private final int[] lengths;
+
+        /** Number of contacts per chunk */
+        private final int[] counts;
+
+        /** Total number of contacts */
+        private final int contactCount;
+
+        /** Recently decoded chunks */
+        private final Map<Integer, List<Contact>> cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, List<Contact>> eldest) {
+                return size() > CACHED_CHUNKS;
+            }
+        };
+
+        /**
+         * Constructor for Reader.
+         *
+         * @param channel the open file
+         * @param header the header of the file
+         * @param key the derived key
+         * @param store the store resolving image hashes
+         * @param index the decrypted chunk index
+         */
+        private Reader(FileChannel channel, Header header, SecretKey key, ImageStore store, ByteBuffer index) {
+            this.channel = channel;
+            this.header = header;
+            this.key = key;
+            this.store = store;
+            int chunks = index.getInt();
+            this.offsets = new long[chunks];
+            this.lengths = new int[chunks];
+            this.counts = new int[chunks];
+            int total = 0;
+            for (int i = 0; i < chunks; i++) {
+                this.offsets[i] = index.getLong();
+                this.lengths[i] = index.getInt();
+                this.counts[i] = index.getInt();
+                total += this.counts[i];
+            }
+            this.contactCount = total;
+        }
+
+        /**
+         * Opens an encrypted file.
+         *
+         * @param file the file
+         * @param password the password
+         * @param store the store resolving image hashes
+         * @return the reader
+         * @throws IOException if reading fails, the password is wrong or the file was modified
+         */
+        public static Reader open(Path file, char[] password, ImageStore store) throws IOException {
+            FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+            try {
+                ByteBuffer headerBytes = readFully(channel, 0, HEADER_LENGTH);
+                Header header = Header.parse(headerBytes);
+                ByteBuffer trailer = readFully(channel, channel.size() - TRAILER_LENGTH, TRAILER_LENGTH);
+                long indexOffset = trailer.getLong();
+                int indexLength = trailer.getInt();
+                if (trailer.getInt() != MAGIC) {
+                    throw new IOException("Incomplete contact file");
+                }
+                SecretKey key = deriveKey(password, header);
+                byte[] index = decrypt(key, header, INDEX_POSITION,
+                        readFully(channel, indexOffset, indexLength).array());
+                return new Reader(channel, header, key, store, ByteBuffer.wrap(index));
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Returns the number of contacts in the file.
+         *
+         * @return the number of contacts
+         */
+        public int getContactCount() {
+            return this.contactCount;
+        }
+
+        /**
+         * Returns the number of chunks in the file.
+         *
+         * @return the number of chunks
+         */
+        public int getChunkCount() {
+            return this.offsets.length;
+        }
+
+        /**
+         * Returns a contact, decrypting its chunk if it is not cached.
+         *
+         * @param index the position of the contact in the file
+         * @return the contact
+         * @throws IOException if reading fails or the chunk was modified
+         */
+        public Contact get(int index) throws IOException {
+            if (index < 0 || index >= this.contactCount) {
+                throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.contactCount);
+            }
+            int chunk = index / this.header.chunkSize;
+            List<Contact> page;
+            synchronized (this.cache) {
+                page = this.cache.get(chunk);
+            }
+            if (page == null) {
+                page = readChunk(chunk);
+                synchronized (this.cache) {
+                    this.cache.put(chunk, page);
+                }
+            }
+            return page.get(index - chunk * this.header.chunkSize);
+        }
+
+        /**
+         * Decrypts and decodes a chunk.
+         * Can be called from several threads at once.
+         *
+         * @param chunk the chunk number
+         * @return the contacts of the chunk
+         * @throws IOException if reading fails or the chunk was modified
+         */
+        public List<Contact> readChunk(int chunk) throws IOException {
+            return ContactCodec.decode(decryptChunk(chunk), this.store);
+        }
+
+        /**
+         * Decrypts a chunk.
+         *
+         * @param chunk the chunk number
+         * @return the plaintext of the chunk
+         * @throws IOException if reading fails or the chunk was modified
+         */
+        private byte[] decryptChunk(int chunk) throws IOException {
+            byte[] encrypted = readFully(this.channel, this.offsets[chunk], this.lengths[chunk]).array();
+            return decrypt(this.key, this.header, chunk, encrypted);
+        }
+
+        /**
+         * Closes the file.
+         *
+         * @throws IOException if closing fails
+         */
+        @Override
+        public void close() throws IOException {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Sequential writer of the chunks, the index and the trailer.
+     * Writes to a temporary file that only replaces the target in {@link #finish()}.
+     */
+    private static final class Writer implements AutoCloseable {
+
+        /** Final file */
+        private final Path file;
+
+        /** Temporary file being written */
+        private final Path temp;
+
+        /** Open temporary file */
+        private final FileChannel channel;
+
+        /** Header of the file */
+        private final Header header;
+
+        /** Derived key */
+        private final SecretKey key;
+
+        /** Chunk index: offset, length and contact count per chunk */
+        private final ByteArrayOutputStream index = new ByteArrayOutputStream();
+
+        /** Number of written chunks */
+        private int chunks;
+
+        /** Whether the file was completed and moved into place */
+        private boolean finished;
+
+        /**
+         * Constructor for Writer.
+         *
+         * @param file the target file
+         * @param header the header of the file
+         * @param key the derived key
+         * @throws IOException if the temporary file cannot be created
+         */
+        Writer(Path file, Header header, SecretKey key) throws IOException {
+            this.file = file;
+            // A unique name in the same directory, so concurrent writers do not collide and the move stays atomic
+            this.temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName() + ".", ".tmp");
+            this.header = header;
+            this.key = key;
+            this.channel = FileChannel.open(this.temp, StandardOpenOption.WRITE);
+            writeFully(this.channel, ByteBuffer.wrap(header.bytes));
+        }
+
+        /**
+         * Appends an encrypted chunk.
+         *
+         * @param encrypted the encrypted chunk
+         * @param count the number of contacts in the chunk
+         * @throws IOException if writing fails
+         */
+        void writeChunk(byte[] encrypted, int count) throws IOException {
+            ByteBuffer entry = ByteBuffer.allocate(16);
+            entry.putLong(this.channel.position()).putInt(encrypted.length).putInt(count);
+            this.index.write(entry.array());
+            writeFully(this.channel, ByteBuffer.wrap(encrypted));
+            this.chunks++;
+        }
+
+        /**
+         * Writes the index and the trailer and moves the file into place.
+         *
+         * @throws IOException if writing fails
+         */
+        void finish() throws IOException {
+            ByteArrayOutputStream plain = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(plain)) {
+                out.writeInt(this.chunks);
+                this.index.writeTo(out);
+            }
+            byte[] encryptedIndex = encrypt(this.key, this.header, INDEX_POSITION, plain.toByteArray());
+            long indexOffset = this.channel.position();
+            writeFully(this.channel, ByteBuffer.wrap(encryptedIndex));
+            ByteBuffer trailer = ByteBuffer.allocate(TRAILER_LENGTH);
+            trailer.putLong(indexOffset).putInt(encryptedIndex.length).putInt(MAGIC).flip();
+            writeFully(this.channel, trailer);
+            this.channel.force(true);
+            this.channel.close();
+            Files.move(this.temp, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.finished = true;
+        }
+
+        /**
+         * Closes the file and discards it if it was not finished.
+         *
+         * @throws IOException if the temporary file cannot be deleted
+         */
+        @Override
+        public void close() throws IOException {
+            if (!this.finished) {
+                this.channel.close();
+                Files.deleteIfExists(this.temp);
+            }
+        }
+    }
+
+    /**
+     * Plaintext header of a file.
+     */
+    private static final class Header {
+
+        /** Encoded header, authenticated with every chunk */
+        private final byte[] bytes;
+
+        /** PBKDF2 iterations */
+        private final int iterations;
+
+        /** Salt of the key derivation */
+        private final byte[] salt;
+
+        /** Number of contacts per chunk */
+        private final int chunkSize;
+
+        /**
+         * Constructor for Header.
+         *
+         * @param bytes the encoded header
+         * @param iterations the PBKDF2 iterations
+         * @param salt the salt of the key derivation
+         * @param chunkSize the number of contacts per chunk
+         */
+        private Header(byte[] bytes, int iterations, byte[] salt, int chunkSize) {
+            this.bytes = bytes;
+            this.iterations = iterations;
+            this.salt = salt;
+            this.chunkSize = chunkSize;
+        }
+
+        /**
+         * Creates the header of a new file with a fresh salt.
+         *
+         * @param chunkSize the number of contacts per chunk
+         * @return the header
+         */
+        static Header create(int chunkSize) {
+            if (chunkSize < 1) {
+                throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+            }
+            byte[] salt = new byte[SALT_LENGTH];
+            RANDOM.nextBytes(salt);
+            ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH);
+            buffer.putInt(MAGIC).put(VERSION).putInt(KDF_ITERATIONS).put(salt).putInt(chunkSize);
+            return new Header(buffer.array(), KDF_ITERATIONS, salt, chunkSize);
+        }
+
+        /**
+         * Parses the header of an existing file.
+         *
+         * @param buffer the header bytes
+         * @return the header
+         * @throws IOException if the file is not an encrypted contact file
+         */
+        static Header parse(ByteBuffer buffer) throws IOException {
+            byte[] bytes = Arrays.copyOf(buffer.array(), HEADER_LENGTH);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException("Not an encrypted contact file");
+            }
+            if (buffer.get() != VERSION) {
+                throw new IOException("Unsupported contact file version");
+            }
+            int iterations = buffer.getInt();
+            byte[] salt = new byte[SALT_LENGTH];
+            buffer.get(salt);
+            int chunkSize = buffer.getInt();
+            if (iterations < 1 || chunkSize < 1) {
+                throw new IOException("Corrupted contact file header");
+            }
+            return new Header(bytes, iterations, salt, chunkSize);
+        }
+    }
+
+    /**
+     * Derives the AES key of a file from a password.
+     *
+     * @param password the password
+     * @param header the header with salt and iterations
+     * @return the AES-256 key
+     */
+    private static SecretKey deriveKey(char[] password, Header header) {
+        try {
+            SecretKeyFactory factory = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256");
+            PBEKeySpec spec = new PBEKeySpec(password, header.salt, header.iterations, 256);
+            try {
+                return new SecretKeySpec(factory.generateSecret(spec).getEncoded(), "AES");
+            } finally {
+                spec.clearPassword();
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("PBKDF2 not available", e);
+        }
+    }
+
+    /**
+     * Encrypts a chunk.
+     *
+     * @param key the key of the file
+     * @param header the header of the file
+     * @param position the position of the chunk, used as nonce
+     * @param plain the plaintext
+     * @return the ciphertext with tag
+     */
+    private static byte[] encrypt(SecretKey key, Header header, long position, byte[] plain) {
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce(position)));
+            cipher.updateAAD(header.bytes);
+            return cipher.doFinal(plain);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM not available", e);
+        }
+    }
+
+    /**
+     * Decrypts and authenticates a chunk.
+     *
+     * @param key the key of the file
+     * @param header the header of the file
+     * @param position the position of the chunk, used as nonce
+     * @param encrypted the ciphertext with tag
+     * @return the plaintext
+     * @throws IOException if the password is wrong or the chunk was modified
+     */
+    private static byte[] decrypt(SecretKey key, Header header, long position, byte[] encrypted) throws IOException {
+        try {
+            Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            cipher.init(Cipher.DECRYPT_MODE, key, new GCMParameterSpec(TAG_BITS, nonce(position)));
+            cipher.updateAAD(header.bytes);
+            return cipher.doFinal(encrypted);
+        } catch (AEADBadTagException e) {
+            throw new IOException("Wrong password or modified contact file", e);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM not available", e);
+        }
+    }
+
+    /**
+     * Creates the nonce of a chunk position.
+     * Unique per file because every file has its own salt and therefore its own key.
+     *
+     * @param position the chunk position
+     * @return the 12-byte nonce
+     */
+    private static byte[] nonce(long position) {
+        return ByteBuffer.allocate(NONCE_LENGTH).putInt(0).putLong(position).array();
+    }
+
+    /**
+     * Reads a range of a file.
+     *
+     * @param channel the file
+     * @param position the start of the range
+     * @param length the length of the range
+     * @return the buffer with the bytes, positioned at the start
+     * @throws IOException if the range cannot be read
+     */
+    private static ByteBuffer readFully(FileChannel channel, long position, int length) throws IOException {
+        if (position < 0 || length < 0 || position + length > channel.size()) {
+            throw new IOException("Truncated contact file");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Truncated contact file");
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Writes a buffer completely.
+     *
+     * @param channel the file
+     * @param buffer the bytes to be written
+     * @throws IOException if writing fails
+     */
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
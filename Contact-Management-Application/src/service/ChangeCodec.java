@@ -0,0 +1,271 @@
+package service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Change;
+import model.Stamp;
+
+/**
+ * Line-based text format for shipping change log deltas between replicas.
+ *
+ * The first line is a header: {@code delta <replicaId> <lastSequence>}.
+ * Every following line is one change with tab-separated fields:
+ * type (P or D), clock, replica, contact id, first name, last name and comma-separated emails.
+ * Tabs, line breaks, commas and backslashes inside fields are escaped with a backslash.
+ */
+public final class ChangeCodec {
+
+    /** Keyword of the header line */
+    private static final String HEADER = "delta";
+
+    /**
+     * Decoded delta with the sender's replica identifier and last sequence number.
+     */
+    public static final class Delta {
+
+        /** Identifier of the sending replica */
+        private final String replicaId;
+
+        /** Sequence number of the sender's latest change */
+        private final long lastSequence;
+
+        /** Changes of the delta in log order */
+        private final List<Change> changes;
+
+        /**
+         * Constructor for Delta.
+         *
+         * @param replicaId the identifier of the sending replica
+         * @param lastSequence the sequence number of the sender's latest change
+         * @param changes the changes in log order
+         */
+        public Delta(String replicaId, long lastSequence, List<Change> changes) {
+            this.replicaId = replicaId;
+            this.lastSequence = lastSequence;
+            this.changes = changes;
+        }
+
+        /**
+         * Returns the identifier of the sending replica.
+         *
+         * @return the replica identifier
+         */
+        public String getReplicaId() {
+            return this.replicaId;
+        }
+
+        /**
+         * Returns the sequence number of the sender's latest change.
+         *
+         * @return the sequence number to ask for next time
+         */
+        public long getLastSequence() {
+            return this.lastSequence;
+        }
+
+        /**
+         * Returns the changes of the delta.
+         *
+         * @return the changes in log order
+         */
+        public List<Change> getChanges() {
+            return this.changes;
+        }
+    }
+
+    /**
+     * Not instantiable.
+     */
+    private ChangeCodec() {
+    }
+
+    /**
+     * Writes a delta.
+     *
+     * @param out the target writer
+     * @param delta the delta to be written
+     * @throws IOException if writing fails
+     */
+    public static void write(Writer out, Delta delta) throws IOException {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(HEADER).append('\t');
+        escape(sb, delta.getReplicaId());
+        sb.append('\t').append(delta.getLastSequence()).append('\n');
+        out.write(sb.toString());
+        for (Change change : delta.getChanges()) {
+            sb.setLength(0);
+            sb.append(change.getType() == Change.Type.PUT ? 'P' : 'D').append('\t')
+                    .append(change.getStamp().getClock()).append('\t');
+            escape(sb, change.getStamp().getReplicaId());
+            sb.append('\t');
+            escape(sb, change.getContactId());
+            if (change.getType() == Change.Type.PUT) {
+                sb.append('\t');
+                escape(sb, change.getName());
+                sb.append('\t');
+                escape(sb, change.getLastName());
+                sb.append('\t');
+                for (int i = 0; i < change.getEmails().size(); i++) {
+                    if (i > 0) {
+                        sb.append(',');
+                    }
+                    escape(sb, change.getEmails().get(i));
+                }
+            }
+            out.write(sb.append('\n').toString());
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a delta.
+     *
+     * @param in the source reader
+     * @return the decoded delta
+     * @throws IOException if reading fails or the input is malformed
+     */
+    public static Delta read(BufferedReader in) throws IOException {
+        String header = in.readLine();
+        if (header == null) {
+            throw new IOException("Empty delta");
+        }
+        List<String> head = fields(header);
+        if (head.size() != 3 || !head.get(0).equals(HEADER)) {
+            throw new IOException("Malformed delta header: " + header);
+        }
+        List<Change> changes = new ArrayList<>();
+        String line;
+        while ((line = in.readLine()) != null) {
+            if (line.isEmpty()) {
+                continue;
+            }
+            List<String> fields = fields(line);
+            try {
+                Stamp stamp = new Stamp(Long.parseLong(fields.get(1)), unescape(fields.get(2)));
+                String contactId = unescape(fields.get(3));
+                if (fields.get(0).equals("D") && fields.size() == 4) {
+                    changes.add(new Change(Change.Type.DELETE, contactId, stamp, null, null, List.of()));
+                } else if (fields.get(0).equals("P") && fields.size() == 7) {
+                    List<String> emails = fields.get(6).isEmpty() ? List.of() : unescapeList(fields.get(6), ',');
+                    changes.add(new Change(Change.Type.PUT, contactId, stamp,
+                            unescape(fields.get(4)), unescape(fields.get(5)), emails));
+                } else {
+                    throw new IOException("Malformed change: " + line);
+                }
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                throw new IOException("Malformed change: " + line, e);
+            }
+        }
+        try {
+            return new Delta(unescape(head.get(1)), Long.parseLong(head.get(2)), changes);
+        } catch (NumberFormatException e) {
+            throw new IOException("Malformed delta header: " + header, e);
+        }
+    }
+
+    /**
+     * Appends a field with tabs, line breaks, commas and backslashes escaped.
+     *
+     * @param sb the target builder
+     * @param value the field value
+     */
+    private static void escape(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case ',':
+                case '\\':
+                    sb.append('\\').append(c);
+                    break;
+                default:
+                    sb.append(c);
+            }
+        }
+    }
+
+    /**
+     * Splits a line into its raw fields.
+     * Tabs inside fields are escaped, so every tab is a separator.
+     *
+     * @param line the line to be split
+     * @return the still escaped fields
+     */
+    private static List<String> fields(String line) {
+        List<String> parts = new ArrayList<>();
+        int start = 0;
+        int tab;
+        while ((tab = line.indexOf('\t', start)) >= 0) {
+            parts.add(line.substring(start, tab));
+            start = tab + 1;
+        }
+        parts.add(line.substring(start));
+        return parts;
+    }
+
+    /**
+     * Unescapes a field.
+     *
+     * @param field the escaped field
+     * @return the original value
+     */
+    private static String unescape(String field) {
+        return unescapeList(field, -1).get(0);
+    }
+
+    /**
+     * Splits a field at unescaped separators and unescapes the parts.
+     *
+     * @param field the escaped field
+     * @param separator the separator character, -1 for none
+     * @return the original values
+     */
+    private static List<String> unescapeList(String field, int separator) {
+        List<String> parts = new ArrayList<>();
+        StringBuilder sb = new StringBuilder(field.length());
+        for (int i = 0; i < field.length(); i++) {
+            char c = field.charAt(i);
+            if (c == '\\' && i + 1 < field.length()) {
+                sb.append(unescape(field.charAt(++i)));
+            } else if (c == separator) {
+                parts.add(sb.toString());
+                sb.setLength(0);
+            } else {
+                sb.append(c);
+            }
+        }
+        parts.add(sb.toString());
+        return parts;
+    }
+
+    /**
+     * Resolves an escape sequence.
+     *
+     * @param c the escaped character
+     * @return the original character
+     */
+    private static char unescape(char c) {
+        switch (c) {
+            case 't':
+                return '\t';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            default:
+                return c;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.Contact;
+
+/**
+ * Converts contacts to and from the JSON representation used by the contact service.
+ * Only supports the flat objects exchanged by the service: string values and arrays of strings.
+ */
+public final class ContactJson {
+
+    /** Text being parsed */
+    private final String text;
+
+    /** Current position in the text */
+    private int pos;
+
+    /**
+     * Constructor for ContactJson.
+     *
+     * @param text the text to be parsed
+     */
+    private ContactJson(String text) {
+        this.text = text;
+    }
+
+    /**
+     * Converts a contact to JSON.
+     *
+     * @param contact the contact to be converted
+     * @return the JSON object
+     */
+    public static String toJson(Contact contact) {
+        StringBuilder sb = new StringBuilder(128);
+        sb.append("{\"id\":");
+        quote(sb, contact.getId());
+        sb.append(",\"name\":");
+        quote(sb, contact.getName());
+        sb.append(",\"lastName\":");
+        quote(sb, contact.getLastName());
+        sb.append(",\"emails\":[");
+        List<String> emails = contact.getEmails();
+        for (int i = 0; i < emails.size(); i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            quote(sb, emails.get(i));
+        }
+        sb.append("],\"hasImage\":").append(contact.hasImage()).append('}');
+        return sb.toString();
+    }
+
+    /**
+     * Creates a contact from JSON.
+     * Emails are added through {@link Contact#addEmail(String)} and therefore validated.
+     *
+     * @param json the JSON object with name, lastName and emails
+     * @return the created contact
+     * @throws IllegalArgumentException if the JSON is malformed, a name is missing or an email is invalid
+     */
+    public static Contact fromJson(String json) {
+        Map<String, Object> fields = new ContactJson(json).parseObject();
+        Object name = fields.get("name");
+        Object lastName = fields.get("lastName");
+        if (!(name instanceof String) || !(lastName instanceof String)
+                || ((String) name).isEmpty() || ((String) lastName).isEmpty()) {
+            throw new IllegalArgumentException("name and lastName are required");
+        }
+        Contact contact = new Contact((String) name, (String) lastName);
+        Object emails = fields.get("emails");
+        if (emails instanceof List) {
+            for (Object email : (List<?>) emails) {
+                if (!(email instanceof String) || !contact.addEmail((String) email)) {
+                    throw new IllegalArgumentException("Invalid email: " + email);
+                }
+            }
+        } else if (emails != null) {
+            throw new IllegalArgumentException("emails must be an array");
+        }
+        return contact;
+    }
+
+    /**
+     * Appends a JSON string literal.
+     *
+     * @param sb the target builder
+     * @param value the value to be quoted, null is written as null
+     */
+    static void quote(StringBuilder sb, String value) {
+        if (value == null) {
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Parses a JSON object with string, null or string array values.
+     *
+     * @return the fields of the object
+     */
+    private Map<String, Object> parseObject() {
+        Map<String, Object> fields = new LinkedHashMap<>();
+        expect('{');
+        if (peek() == '}') {
+            this.pos++;
+            return fields;
+        }
+        do {
+            String key = parseString();
+            expect(':');
+            fields.put(key, parseValue());
+        } while (consume(','));
+        expect('}');
+        skipWhitespace();
+        if (this.pos != this.text.length()) {
+            throw new IllegalArgumentException("Unexpected content at " + this.pos);
+        }
+        return fields;
+    }
+
+    /**
+     * Parses a string, null or an array of strings.
+     *
+     * @return the parsed value
+     */
+    private Object parseValue() {
+        char c = peek();
+        if (c == '"') {
+            return parseString();
+        }
+        if (c == '[') {
+            this.pos++;
+            List<String> values = new ArrayList<>();
+            if (peek() == ']') {
+                this.pos++;
+                return values;
+            }
+            do {
+                values.add(parseString());
+            } while (consume(','));
+            expect(']');
+            return values;
+        }
+        if (this.text.startsWith("null", this.pos)) {
+            this.pos += 4;
+            return null;
+        }
+        throw new IllegalArgumentException("Unsupported value at " + this.pos);
+    }
+
+    /**
+     * Parses a string literal.
+     *
+     * @return the unescaped string
+     */
+    private String parseString() {
+        expect('"');
+        StringBuilder sb = new StringBuilder();
+        while (this.pos < this.text.length()) {
+            char c = this.text.charAt(this.pos++);
+            if (c == '"') {
+                return sb.toString();
+            }
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            if (this.pos >= this.text.length()) {
+                break;
+            }
+            char esc = this.text.charAt(this.pos++);
+            switch (esc) {
+                case 'n':
+                    sb.append('\n');
+                    break;
+                case 'r':
+                    sb.append('\r');
+                    break;
+                case 't':
+                    sb.append('\t');
+                    break;
+                case 'b':
+                    sb.append('\b');
+                    break;
+                case 'f':
+                    sb.append('\f');
+                    break;
+                case 'u':
+                    if (this.pos + 4 > this.text.length()) {
+                        throw new IllegalArgumentException("Invalid escape at " + this.pos);
+                    }
+                    sb.append((char) Integer.parseInt(this.text.substring(this.pos, this.pos + 4), 16));
+                    this.pos += 4;
+                    break;
+                default:
+                    sb.append(esc);
+            }
+        }
+        throw new IllegalArgumentException("Unterminated string");
+    }
+
+    /**
+     * Skips whitespace and returns the next character without consuming it.
+     *
+     * @return the next character
+     */
+    private char peek() {
+        skipWhitespace();
+        if (this.pos >= this.text.length()) {
+            throw new IllegalArgumentException("Unexpected end of input");
+        }
+        return this.text.charAt(this.pos);
+    }
+
+    /**
+     * Consumes the next character if it matches.
+     *
+     * @param c the expected character
+     * @return true if the character was consumed
+     */
+    private boolean consume(char c) {
+        if (peek() == c) {
+            this.pos++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Consumes the next character or fails.
+     *
+     * @param c the expected character
+     */
+    private void expect(char c) {
+        if (!consume(c)) {
+            throw new IllegalArgumentException("Expected '" + c + "' at " + this.pos);
+        }
+    }
+
+    /**
+     * Skips whitespace characters.
+     */
+    private void skipWhitespace() {
+        while (this.pos < this.text.length() && Character.isWhitespace(this.text.charAt(this.pos))) {
+            this.pos++;
+        }
+    }
+}
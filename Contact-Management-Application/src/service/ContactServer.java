@@ -0,0 +1,668 @@
+package service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import javafx.collections.ListChangeListener;
+import model.Contact;
+import model.ContactList;
+
+/**
+ * Embedded HTTP server that shares a contact list with other clients.
+ *
+ * Endpoints:
+ * GET /contacts?offset=&amp;limit=&amp;q= lists or searches contacts page by page,
+ * POST /contacts adds a contact,
+ * GET, PUT and DELETE /contacts/{id} read, replace and delete a contact,
+ * GET /contacts/events streams list changes as server-sent events,
+ * GET /contacts/changes?since=&amp;replica=&amp;peer= returns the change log delta for {@link ReplicaSync}.
+ *
+ * Responses carry the list version as ETag so clients can revalidate with If-None-Match;
+ * the ETag also holds an epoch chosen per server instance, since the version starts again after a restart.
+ * The contact list is only accessed through the model executor, e.g. the JavaFX application thread.
+ */
+public class ContactServer {
+
+    /** Base path of the contact resources */
+    private static final String BASE_PATH = "/contacts";
+
+    /** Default number of contacts per page */
+    private static final int DEFAULT_LIMIT = 50;
+
+    /** Maximum number of contacts per page */
+    private static final int MAX_LIMIT = 1000;
+
+    /** Interval for keep-alive comments on event streams in seconds */
+    private static final int KEEP_ALIVE_SECONDS = 15;
+
+    /** Number of threads handling requests */
+    private static final int REQUEST_THREADS = 16;
+
+    /** Maximum number of open event streams, so that some threads are left for other requests */
+    private static final int MAX_EVENT_STREAMS = REQUEST_THREADS / 2;
+
+    /** Maximum number of events queued for one event stream client */
+    private static final int MAX_QUEUED_EVENTS = 1024;
+
+    /** Event sent to a client that fell too far behind before its stream is closed */
+    private static final String OVERFLOW_EVENT = "event: overflow\ndata: {}\n\n";
+
+    /** Contact list served by this server */
+    private final ContactList contactList;
+
+    /** Executor that owns all access to the contact list */
+    private final Executor modelExecutor;
+
+    /** Tells whether the current thread is the thread of the model executor */
+    private final BooleanSupplier onModelThread;
+
+    /** Queues of the connected event stream clients */
+    private final List<BlockingQueue<String>> subscribers = new CopyOnWriteArrayList<>();
+
+    /** Permits for open event streams */
+    private final Semaphore eventStreams = new Semaphore(MAX_EVENT_STREAMS);
+
+    /** Epoch of this server instance, part of every ETag */
+    private final String epoch = Long.toHexString(UUID.randomUUID().getMostSignificantBits());
+
+    /** Listener publishing list changes to the event streams */
+    private final ListChangeListener<Contact> changePublisher = this::publishChange;
+
+    /** Underlying HTTP server */
+    private HttpServer server;
+
+    /** Executor handling the requests */
+    private ExecutorService requestExecutor;
+
+    /**
+     * Constructor for ContactServer.
+     *
+     * @param contactList the contact list to be served
+     * @param modelExecutor the executor on which the contact list is read and modified
+     */
+    public ContactServer(ContactList contactList, Executor modelExecutor) {
+        this(contactList, modelExecutor, () -> false);
+    }
+
+    /**
+     * Constructor for ContactServer.
+     * Model tasks started on the model thread itself, e.g. starting the server on the JavaFX
+     * application thread, run directly instead of waiting for a task queued behind the caller.
+     *
+     * @param contactList the contact list to be served
+     * @param modelExecutor the executor on which the contact list is read and modified
+     * @param onModelThread tells whether the current thread is the thread of the model executor
+     */
+    public ContactServer(ContactList contactList, Executor modelExecutor, BooleanSupplier onModelThread) {
+        this.contactList = contactList;
+        this.modelExecutor = modelExecutor;
+        this.onModelThread = onModelThread;
+    }
+
+    /**
+     * Starts the server.
+     * Requests are handled by a fixed number of threads; event streams may only occupy
+     * half of them, so that long-lived streams do not block other clients.
+     *
+     * @param port the port to listen on, 0 for any free port
+     * @throws IOException if the server cannot be bound
+     */
+    public synchronized void start(int port) throws IOException {
+        if (this.server != null) {
+            throw new IllegalStateException("Server already started");
+        }
+        this.requestExecutor = Executors.newFixedThreadPool(REQUEST_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "contact-service");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(port), 0);
+        this.server.createContext(BASE_PATH, this::handle);
+        this.server.setExecutor(this.requestExecutor);
+        onModel(() -> {
+            this.contactList.getList().addListener(this.changePublisher);
+            return null;
+        });
+        this.server.start();
+    }
+
+    /**
+     * Stops the server and closes all event streams.
+     */
+    public synchronized void stop() {
+        if (this.server == null) {
+            return;
+        }
+        this.server.stop(0);
+        this.requestExecutor.shutdownNow();
+        this.modelExecutor.execute(() -> this.contactList.getList().removeListener(this.changePublisher));
+        this.subscribers.clear();
+        this.server = null;
+    }
+
+    /**
+     * Returns the port the server is listening on.
+     *
+     * @return the port
+     */
+    public synchronized int getPort() {
+        if (this.server == null) {
+            throw new IllegalStateException("Server not started");
+        }
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Dispatches a request to the matching endpoint.
+     *
+     * @param exchange the HTTP exchange
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String path = exchange.getRequestURI().getPath();
+            String method = exchange.getRequestMethod();
+            if (path.equals(BASE_PATH) || path.equals(BASE_PATH + "/")) {
+                if (method.equals("GET")) {
+                    listContacts(exchange);
+                } else if (method.equals("POST")) {
+                    addContact(exchange);
+                } else {
+                    send(exchange, 405, null);
+                }
+            } else if (path.equals(BASE_PATH + "/events")) {
+                if (method.equals("GET")) {
+                    streamEvents(exchange);
+                } else {
+                    send(exchange, 405, null);
+                }
+            } else if (path.equals(BASE_PATH + "/changes")) {
+                if (method.equals("GET")) {
+                    sendChanges(exchange);
+                } else {
+                    send(exchange, 405, null);
+                }
+            } else if (!path.startsWith(BASE_PATH + "/")) {
+                // The context matches by prefix, e.g. /contactsXY
+                send(exchange, 404, null);
+            } else {
+                String id = path.substring(BASE_PATH.length() + 1);
+                if (id.isEmpty() || id.contains("/")) {
+                    send(exchange, 404, null);
+                } else if (method.equals("GET")) {
+                    getContact(exchange, id);
+                } else if (method.equals("PUT")) {
+                    updateContact(exchange, id);
+                } else if (method.equals("DELETE")) {
+                    deleteContact(exchange, id);
+                } else {
+                    send(exchange, 405, null);
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            send(exchange, 400, error(e.getMessage()));
+        } catch (IOException e) {
+            throw e;
+        } catch (RuntimeException e) {
+            send(exchange, 500, error(e.toString()));
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Lists a page of contacts, optionally filtered by a search query.
+     *
+     * @param exchange the HTTP exchange
+     */
+    private void listContacts(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        int offset = Math.max(0, parseInt(query.get("offset"), 0));
+        int limit = Math.min(MAX_LIMIT, Math.max(1, parseInt(query.get("limit"), DEFAULT_LIMIT)));
+        String search = query.get("q");
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        Versioned result = onModel(() -> {
+            String etag = etag();
+            if (etag.equals(ifNoneMatch)) {
+                return new Versioned(etag, null, true);
+            }
+            List<Contact> source = search == null || search.isEmpty()
+                    ? this.contactList.getList()
+                    : this.contactList.search(search);
+            StringBuilder sb = new StringBuilder();
+            sb.append("{\"version\":").append(this.contactList.getVersion())
+                    .append(",\"total\":").append(source.size())
+                    .append(",\"offset\":").append(offset)
+                    .append(",\"limit\":").append(limit)
+                    .append(",\"items\":[");
+            int end = Math.min(source.size(), offset + limit);
+            for (int i = offset; i < end; i++) {
+                if (i > offset) {
+                    sb.append(',');
+                }
+                sb.append(ContactJson.toJson(source.get(i)));
+            }
+            return new Versioned(etag, sb.append("]}").toString(), false);
+        });
+        sendVersioned(exchange, result);
+    }
+
+    /**
+     * Returns a single contact.
+     *
+     * @param exchange the HTTP exchange
+     * @param id the identifier of the contact
+     */
+    private void getContact(HttpExchange exchange, String id) throws IOException {
+        String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+        Versioned result = onModel(() -> {
+            String etag = etag();
+            if (etag.equals(ifNoneMatch)) {
+                return new Versioned(etag, null, true);
+            }
+            Contact contact = this.contactList.getContactById(id);
+            return new Versioned(etag, contact == null ? null : ContactJson.toJson(contact), false);
+        });
+        sendVersioned(exchange, result);
+    }
+
+    /**
+     * Adds a contact from the request body.
+     *
+     * @param exchange the HTTP exchange
+     */
+    private void addContact(HttpExchange exchange) throws IOException {
+        Contact contact = ContactJson.fromJson(readBody(exchange));
+        String body = onModel(() -> {
+            this.contactList.addContact(contact);
+            return ContactJson.toJson(contact);
+        });
+        exchange.getResponseHeaders().set("Location", BASE_PATH + "/" + contact.getId());
+        sendJson(exchange, 201, body);
+    }
+
+    /**
+     * Replaces a contact with the one from the request body.
+     *
+     * @param exchange the HTTP exchange
+     * @param id the identifier of the contact
+     */
+    private void updateContact(HttpExchange exchange, String id) throws IOException {
+        Contact contact = ContactJson.fromJson(readBody(exchange));
+        String body = onModel(() -> {
+            Contact existing = this.contactList.getContactById(id);
+            if (existing == null) {
+                return null;
+            }
+            // Keeps the image, it is not part of the JSON representation
+            contact.setContactImage(existing.getContactImage());
+            this.contactList.setContactAtIndex(this.contactList.indexOf(id), contact);
+            return ContactJson.toJson(contact);
+        });
+        if (body == null) {
+            send(exchange, 404, null);
+        } else {
+            sendJson(exchange, 200, body);
+        }
+    }
+
+    /**
+     * Deletes a contact.
+     *
+     * @param exchange the HTTP exchange
+     * @param id the identifier of the contact
+     */
+    private void deleteContact(HttpExchange exchange, String id) throws IOException {
+        boolean deleted = onModel(() -> {
+            int index = this.contactList.indexOf(id);
+            if (index < 0) {
+                return false;
+            }
+            this.contactList.delContact(index);
+            return true;
+        });
+        send(exchange, deleted ? 204 : 404, null);
+    }
+
+    /**
+     * Sends the changes after the sequence number a peer has seen.
+     * If the peer knew this server under another replica identifier, the whole log is sent.
+     * The peer parameter is the replica identifier of the asking peer; its own changes are not sent back.
+     *
+     * @param exchange the HTTP exchange
+     */
+    private void sendChanges(HttpExchange exchange) throws IOException {
+        Map<String, String> query = parseQuery(exchange.getRequestURI().getRawQuery());
+        String replica = query.get("replica");
+        String peer = query.get("peer");
+        long since = Math.max(0, parseLong(query.get("since")));
+        ChangeCodec.Delta delta = onModel(() -> ReplicaSync.createDelta(this.contactList,
+                replica == null || replica.equals(this.contactList.getReplicaId()) ? since : 0, peer));
+        StringWriter body = new StringWriter();
+        ChangeCodec.write(body, delta);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        send(exchange, 200, body.toString());
+    }
+
+    /**
+     * Streams list changes as server-sent events until the client disconnects.
+     * Each event carries the new list version so clients know which pages to refetch.
+     * A client that falls more than {@value #MAX_QUEUED_EVENTS} events behind gets an overflow
+     * event and its stream is closed; it has to reload the list and reconnect.
+     *
+     * @param exchange the HTTP exchange
+     */
+    private void streamEvents(HttpExchange exchange) throws IOException {
+        if (!this.eventStreams.tryAcquire()) {
+            send(exchange, 503, error("Too many event streams"));
+            return;
+        }
+        BlockingQueue<String> queue = new ArrayBlockingQueue<>(MAX_QUEUED_EVENTS);
+        this.subscribers.add(queue);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            long version = onModel(this.contactList::getVersion);
+            write(out, "event: hello\ndata: {\"version\":" + version + "}\n\n");
+            while (!Thread.currentThread().isInterrupted()) {
+                String event = queue.poll(KEEP_ALIVE_SECONDS, TimeUnit.SECONDS);
+                write(out, event != null ? event : ": keep-alive\n\n");
+                if (event == OVERFLOW_EVENT) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // Client disconnected
+        } finally {
+            this.subscribers.remove(queue);
+            this.eventStreams.release();
+        }
+    }
+
+    /**
+     * Publishes a list change to all event stream clients.
+     * Runs on the model executor, so it only enqueues the events.
+     *
+     * @param change the change of the contact list
+     */
+    private void publishChange(ListChangeListener.Change<? extends Contact> change) {
+        if (this.subscribers.isEmpty()) {
+            return;
+        }
+        long version = this.contactList.getVersion();
+        while (change.next()) {
+            String type;
+            if (change.wasReplaced()) {
+                type = "replace";
+            } else if (change.wasAdded()) {
+                type = "add";
+            } else if (change.wasRemoved()) {
+                type = "remove";
+            } else {
+                type = "update";
+            }
+            StringBuilder sb = new StringBuilder("event: change\ndata: {\"version\":")
+                    .append(version)
+                    .append(",\"type\":\"").append(type)
+                    .append("\",\"from\":").append(change.getFrom())
+                    .append(",\"added\":").append(change.getAddedSize())
+                    .append(",\"removed\":").append(change.getRemovedSize())
+                    .append("}\n\n");
+            String event = sb.toString();
+            for (BlockingQueue<String> queue : this.subscribers) {
+                if (!queue.offer(event)) {
+                    // The client does not keep up: drops its events and ends its stream
+                    this.subscribers.remove(queue);
+                    queue.clear();
+                    queue.offer(OVERFLOW_EVENT);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the ETag of the current list version.
+     * Must be called in the same model task that reads the response body.
+     *
+     * @return the quoted epoch and version
+     */
+    private String etag() {
+        return "\"" + this.epoch + "-" + this.contactList.getVersion() + "\"";
+    }
+
+    /**
+     * Sends a response read in one model task together with its ETag:
+     * 304 if the client has the version, 404 if there is no body, 200 otherwise.
+     *
+     * @param exchange the HTTP exchange
+     * @param result the version and body
+     */
+    private void sendVersioned(HttpExchange exchange, Versioned result) throws IOException {
+        exchange.getResponseHeaders().set("ETag", result.etag);
+        if (result.notModified) {
+            send(exchange, 304, null);
+        } else if (result.body == null) {
+            send(exchange, 404, null);
+        } else {
+            sendJson(exchange, 200, result.body);
+        }
+    }
+
+    /**
+     * Response body with the ETag of the list version it was read at.
+     */
+    private static final class Versioned {
+
+        /** ETag of the version */
+        private final String etag;
+
+        /** JSON body, null if the resource does not exist or was not modified */
+        private final String body;
+
+        /** Whether the client already has this version */
+        private final boolean notModified;
+
+        /**
+         * Constructor for Versioned.
+         *
+         * @param etag the ETag of the version
+         * @param body the JSON body
+         * @param notModified whether the client already has this version
+         */
+        Versioned(String etag, String body, boolean notModified) {
+            this.etag = etag;
+            this.body = body;
+            this.notModified = notModified;
+        }
+    }
+
+    /**
+     * Runs a task on the model executor and waits for its result.
+     * On the model thread the task runs directly, since waiting there would block the executor.
+     *
+     * @param task the task accessing the contact list
+     * @return the result of the task
+     */
+    private <T> T onModel(Supplier<T> task) {
+        if (this.onModelThread.getAsBoolean()) {
+            return task.get();
+        }
+        try {
+            return CompletableFuture.supplyAsync(task, this.modelExecutor).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the contact list", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * Sends a JSON response.
+     *
+     * @param exchange the HTTP exchange
+     * @param status the status code
+     * @param body the JSON body
+     */
+    private static void sendJson(HttpExchange exchange, int status, String body) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        send(exchange, status, body);
+    }
+
+    /**
+     * Sends a response.
+     *
+     * @param exchange the HTTP exchange
+     * @param status the status code
+     * @param body the body or null for an empty response
+     */
+    private static void send(HttpExchange exchange, int status, String body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+            return;
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Writes and flushes an event stream chunk.
+     *
+     * @param out the response stream
+     * @param text the text to be written
+     */
+    private static void write(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.UTF_8));
+        out.flush();
+    }
+
+    /**
+     * Creates a JSON error object.
+     *
+     * @param message the error message
+     * @return the JSON object
+     */
+    private static String error(String message) {
+        StringBuilder sb = new StringBuilder("{\"error\":");
+        ContactJson.quote(sb, message);
+        return sb.append('}').toString();
+    }
+
+    /**
+     * Reads the request body as UTF-8 text.
+     *
+     * @param exchange the HTTP exchange
+     * @return the request body
+     */
+    private static String readBody(HttpExchange exchange) throws IOException {
+        try (InputStream in = exchange.getRequestBody()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Parses a raw query string.
+     *
+     * @param rawQuery the raw query string, may be null
+     * @return the decoded parameters
+     */
+    private static Map<String, String> parseQuery(String rawQuery) {
+        Map<String, String> params = new HashMap<>();
+        if (rawQuery == null) {
+            return params;
+        }
+        for (String pair : rawQuery.split("&")) {
+            int eq = pair.indexOf('=');
+            String key = eq < 0 ? pair : pair.substring(0, eq);
+            String value = eq < 0 ? "" : pair.substring(eq + 1);
+            params.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                    URLDecoder.decode(value, StandardCharsets.UTF_8));
+        }
+        return params;
+    }
+
+    /**
+     * Parses an integer parameter.
+     *
+     * @param value the parameter value, may be null
+     * @param defaultValue the value used if the parameter is missing
+     * @return the parsed value
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    private static int parseInt(String value, int defaultValue) {
+        if (value == null || value.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    /**
+     * Parses a sequence number parameter.
+     *
+     * @param value the parameter value, may be null
+     * @return the parsed value, 0 if the parameter is missing
+     * @throws IllegalArgumentException if the value is not a number
+     */
+    private static long parseLong(String value) {
+        if (value == null || value.isEmpty()) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a number: " + value);
+        }
+    }
+
+    /**
+     * Runs the contact service without user interface.
+     * The contact list is owned by a single model thread.
+     *
+     * @param args the port to listen on, 8080 by default
+     * @throws IOException if the server cannot be bound
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        ExecutorService modelThread = Executors.newSingleThreadExecutor(runnable -> new Thread(runnable, "contact-model"));
+        ContactServer server = new ContactServer(new ContactList(), modelThread);
+        server.start(port);
+        System.out.println("Contact service listening on port " + server.getPort());
+    }
+}
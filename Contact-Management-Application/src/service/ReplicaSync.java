@@ -0,0 +1,201 @@
+package service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+import model.Change;
+import model.ContactList;
+
+/**
+ * Incremental synchronization of a contact list with other replicas.
+ * Only the changes a peer has not seen yet are transferred, either through files
+ * or by pulling from the /contacts/changes endpoint of a peer's {@link ContactServer}.
+ * Conflicts are resolved by {@link ContactList#applyChange(Change)}.
+ */
+public class ReplicaSync {
+
+    /** Contact list to be synchronized */
+    private final ContactList contactList;
+
+    /** Executor that owns all access to the contact list */
+    private final Executor modelExecutor;
+
+    /** Last seen sequence number per peer replica */
+    private final Map<String, Long> cursors = new HashMap<>();
+
+    /** Replica identifier per pulled peer address */
+    private final Map<URI, String> peers = new HashMap<>();
+
+    /**
+     * Constructor for ReplicaSync.
+     *
+     * @param contactList the contact list to be synchronized
+     * @param modelExecutor the executor on which the contact list is read and modified
+     */
+    public ReplicaSync(ContactList contactList, Executor modelExecutor) {
+        this.contactList = contactList;
+        this.modelExecutor = modelExecutor;
+    }
+
+    /**
+     * Creates the delta of the local changes after a sequence number.
+     * Changes made by the receiving peer itself are left out. If the needed changes were
+     * already truncated from the log, the latest change of every contact is sent instead.
+     * A known peer acknowledges the changes up to the sequence number, so the log can be truncated.
+     *
+     * @param contactList the contact list
+     * @param since the last sequence number the peer has seen
+     * @param peerId the replica identifier of the receiving peer, null if unknown
+     * @return the delta
+     */
+    static ChangeCodec.Delta createDelta(ContactList contactList, long since, String peerId) {
+        if (peerId != null) {
+            contactList.getChangeLog().acknowledge(peerId, since);
+        }
+        List<Change> changes = contactList.getChangeLog().since(since);
+        if (changes == null) {
+            changes = contactList.getLatestChanges();
+        }
+        if (peerId != null) {
+            List<Change> forPeer = new ArrayList<>(changes.size());
+            for (Change change : changes) {
+                if (!change.getStamp().getReplicaId().equals(peerId)) {
+                    forPeer.add(change);
+                }
+            }
+            changes = forPeer;
+        }
+        return new ChangeCodec.Delta(contactList.getReplicaId(),
+                contactList.getChangeLog().getLastSequence(), changes);
+    }
+
+    /**
+     * Writes the local changes after a sequence number to a file.
+     *
+     * @param file the target file
+     * @param since the last sequence number the receiving peer has seen
+     * @throws IOException if writing fails
+     */
+    public void exportChanges(Path file, long since) throws IOException {
+        ChangeCodec.Delta delta = onModel(() -> createDelta(this.contactList, since, null));
+        try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            ChangeCodec.write(out, delta);
+        }
+    }
+
+    /**
+     * Applies the changes of a file written by {@link #exportChanges(Path, long)} on a peer.
+     *
+     * @param file the source file
+     * @return the number of changes that were newer than the local state
+     * @throws IOException if reading fails or the file is malformed
+     */
+    public int importChanges(Path file) throws IOException {
+        ChangeCodec.Delta delta;
+        try (BufferedReader in = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            delta = ChangeCodec.read(in);
+        }
+        return apply(delta);
+    }
+
+    /**
+     * Pulls the changes a peer made since the last pull and applies them.
+     *
+     * @param peer the base address of the peer's contact service, e.g. http://localhost:8080
+     * @return the number of changes that were newer than the local state
+     * @throws IOException if the request fails
+     */
+    public int pull(URI peer) throws IOException {
+        String replicaId = this.peers.get(peer);
+        long since = replicaId == null ? 0 : getCursor(replicaId);
+        StringBuilder query = new StringBuilder("/contacts/changes?since=").append(since)
+                .append("&peer=").append(URLEncoder.encode(this.contactList.getReplicaId(), StandardCharsets.UTF_8));
+        if (replicaId != null) {
+            query.append("&replica=").append(URLEncoder.encode(replicaId, StandardCharsets.UTF_8));
+        }
+        HttpURLConnection connection = (HttpURLConnection) peer.resolve(query.toString()).toURL().openConnection();
+        try {
+            int status = connection.getResponseCode();
+            if (status != 200) {
+                throw new IOException("Peer " + peer + " answered with status " + status);
+            }
+            ChangeCodec.Delta delta;
+            try (BufferedReader in = new BufferedReader(
+                    new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+                delta = ChangeCodec.read(in);
+            }
+            this.peers.put(peer, delta.getReplicaId());
+            return apply(delta);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Returns the last sequence number seen from a peer replica.
+     *
+     * @param replicaId the identifier of the peer replica
+     * @return the last seen sequence number, 0 if nothing was received yet
+     */
+    public synchronized long getCursor(String replicaId) {
+        return this.cursors.getOrDefault(replicaId, 0L);
+    }
+
+    /**
+     * Applies a delta and advances the cursor of the sending replica.
+     *
+     * @param delta the received delta
+     * @return the number of applied changes
+     */
+    private int apply(ChangeCodec.Delta delta) {
+        int applied = onModel(() -> {
+            int count = 0;
+            for (Change change : delta.getChanges()) {
+                if (this.contactList.applyChange(change)) {
+                    count++;
+                }
+            }
+            return count;
+        });
+        synchronized (this) {
+            this.cursors.merge(delta.getReplicaId(), delta.getLastSequence(), Math::max);
+        }
+        return applied;
+    }
+
+    /**
+     * Runs a task on the model executor and waits for its result.
+     *
+     * @param task the task accessing the contact list
+     * @return the result of the task
+     */
+    private <T> T onModel(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, this.modelExecutor).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the contact list", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+}
@@ -16,6 +16,9 @@ public class MainApp extends Application {
     /* Primary window of the application */
     private Stage primaryStage;
     
+    /* Main view of the application */
+    private MainView mainView;
+    
     /**
      * Starts the application and shows the main view.
      * 
@@ -35,7 +38,7 @@ public class MainApp extends Application {
      */
     private void showMainView() {
         
-        MainView mainView = new MainView();
+        mainView = new MainView();
         Scene scene = new Scene(mainView.getView(), 800, 600);
         primaryStage.setTitle("ContactApp");
         primaryStage.setScene(scene);
@@ -43,6 +46,16 @@ public class MainApp extends Application {
     }
 
 
+    /**
+     * Stops the application and releases the resources of the main view.
+     */
+    @Override
+    public void stop() throws Exception {
+        if (mainView != null) {
+            mainView.shutdown();
+        }
+    }
+
     /**
      * Main method to launch the application.
      * @param args arguments.
@@ -1,6 +1,33 @@
 package view;
 
+import java.io.IOException;
+import java.net.URI;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import email.DnsMxResolver;
+import email.EmailCheckPipeline;
+import email.MxResolver;
+import email.StubMxResolver;
+import javafx.application.Platform;
+import model.Contact;
 import model.ContactList;
+import model.ImageStore;
+import model.SmartGroup;
+import model.SmartGroupIndex;
+import persistence.ContactSnapshot;
+import persistence.EncryptedContactFile;
+import service.ContactServer;
+import service.ReplicaSync;
 
 /**
  * Controller for the main view of the application.
@@ -15,12 +42,350 @@ public class MainController {
     /** Contact list */
     private ContactList contactList;
     
+    /** Smart groups over the contact list */
+    private SmartGroupIndex groupIndex;
+    
+    /** File of the saved smart groups */
+    private static final Path GROUPS_FILE =
+            Paths.get(System.getProperty("user.home"), ".contactapp", "groups.properties");
+    
+    /** Embedded contact service, null if not enabled */
+    private ContactServer server;
+    
+    /** Thread pulling the changes of the peer replicas, null if no peers are configured */
+    private ScheduledExecutorService sync;
+    
+    /** Interval between two pulls from the peer replicas in seconds */
+    private static final int SYNC_INTERVAL_SECONDS = 10;
+    
+    /** Pipeline checking the email addresses, created on first use */
+    private EmailCheckPipeline emailCheck;
+    
+    /** Thread running background tasks of the controller, created on first use */
+    private ExecutorService background;
+    
+    /** Maximum number of concurrent email checks and DNS lookups */
+    private static final int EMAIL_CHECK_CONCURRENCY = 16;
+    
+    /** Timeout of a single DNS query in milliseconds */
+    private static final int DNS_TIMEOUT_MILLIS = 2000;
+    
     /**
      * Constructor for MainController.
      * Initializes the contact list.
+     * Starts the embedded contact service if the system property
+     * contactapp.server.port is set, and synchronizes with the peers
+     * listed in contactapp.sync.peers.
      */
     protected MainController() {
-        contactList = new ContactList();
+        this(new ContactList());
+    }
+    
+    /**
+     * Constructor for MainController.
+     * Manages an existing contact list, e.g. a generated one in a load test.
+     * Starts the embedded contact service if the system property
+     * contactapp.server.port is set, and synchronizes with the peers
+     * listed in contactapp.sync.peers.
+     * 
+     * @param contactList the contact list to be managed
+     */
+    protected MainController(ContactList contactList) {
+        this.contactList = contactList;
+        groupIndex = new SmartGroupIndex(contactList);
+        loadGroups();
+        String port = System.getProperty("contactapp.server.port");
+        if (port != null) {
+            startServer(Integer.parseInt(port));
+        }
+        String peers = System.getProperty("contactapp.sync.peers");
+        if (peers != null && !peers.isBlank()) {
+            startSync(peers.split(","));
+        }
+    }
+    
+    /**
+     * Starts the embedded contact service.
+     * Requests are applied to the contact list on the JavaFX application thread.
+     * 
+     * @param port the port to listen on
+     */
+    private void startServer(int port) {
+        this.server = new ContactServer(this.contactList, Platform::runLater, Platform::isFxApplicationThread);
+        try {
+            this.server.start(port);
+        } catch (IOException e) {
+            this.server = null;
+            System.err.println("Could not start contact service on port " + port + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Pulls the changes of the peer replicas periodically.
+     * The peers are the base addresses of their contact services, e.g. http://localhost:8080;
+     * they pull the local changes from the embedded contact service in turn.
+     * 
+     * @param peers the base addresses of the peers
+     */
+    private void startSync(String[] peers) {
+        ReplicaSync replicaSync = new ReplicaSync(this.contactList, Platform::runLater);
+        this.sync = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-sync");
+            thread.setDaemon(true);
+            return thread;
+        });
+        for (String peer : peers) {
+            URI address = URI.create(peer.trim());
+            this.sync.scheduleWithFixedDelay(() -> {
+                try {
+                    replicaSync.pull(address);
+                } catch (IOException | RuntimeException e) {
+                    System.err.println("Could not sync with " + address + ": " + e.getMessage());
+                }
+            }, 0, SYNC_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        }
+    }
+    
+    /**
+     * Returns the smart groups over the contact list.
+     * 
+     * @return the group index
+     */
+    public SmartGroupIndex getGroupIndex() {
+        return this.groupIndex;
+    }
+    
+    /**
+     * Adds a smart group and saves the groups.
+     * 
+     * @param group the group to be added
+     */
+    public void addGroup(SmartGroup group) {
+        this.groupIndex.addGroup(group);
+        saveGroups();
+    }
+    
+    /**
+     * Removes a smart group and saves the groups.
+     * 
+     * @param group the group to be removed
+     */
+    public void removeGroup(SmartGroup group) {
+        this.groupIndex.removeGroup(group);
+        saveGroups();
+    }
+    
+    /**
+     * Loads the saved smart groups.
+     */
+    private void loadGroups() {
+        try {
+            for (SmartGroup group : SmartGroup.load(GROUPS_FILE)) {
+                this.groupIndex.addGroup(group);
+            }
+        } catch (IOException e) {
+            System.err.println("Could not load smart groups: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Saves the smart groups.
+     */
+    private void saveGroups() {
+        try {
+            SmartGroup.save(GROUPS_FILE, this.groupIndex.getGroups());
+        } catch (IOException e) {
+            System.err.println("Could not save smart groups: " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Checks email addresses in the background.
+     * Uses DNS for the MX lookups, or a local stub resolver if the
+     * system property contactapp.offline is set.
+     * 
+     * @param emails the email addresses to be checked
+     * @return the future report of the check
+     */
+    public CompletableFuture<EmailCheckPipeline.Report> checkEmails(List<String> emails) {
+        if (this.emailCheck == null) {
+            MxResolver resolver = Boolean.getBoolean("contactapp.offline")
+                    ? new StubMxResolver(true)
+                    : new DnsMxResolver(DNS_TIMEOUT_MILLIS);
+            this.emailCheck = new EmailCheckPipeline(resolver, EMAIL_CHECK_CONCURRENCY);
+        }
+        EmailCheckPipeline pipeline = this.emailCheck;
+        return CompletableFuture.supplyAsync(() -> pipeline.check(emails), background());
+    }
+    
+    /**
+     * Adds the contacts of an encrypted contact file.
+     * The file is decrypted in the background, a window of chunks in parallel; every chunk is added
+     * to the list on the JavaFX application thread in file order, so the first contacts are shown
+     * before the whole file is decrypted. Contacts already in the list are skipped, and the loaded
+     * contacts are not recorded in the change log. Chunks added before an error stay in the list.
+     * The password is cleared afterwards.
+     * 
+     * @param file the contact file
+     * @param password the password of the file
+     * @return the future number of added contacts, completed on the JavaFX application thread
+     */
+    public CompletableFuture<Integer> openContacts(Path file, char[] password) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        background().execute(() -> {
+            // Only accessed on the JavaFX application thread
+            int[] added = new int[1];
+            try {
+                EncryptedContactFile.read(file, password, ImageStore.getDefault(),
+                        contacts -> Platform.runLater(() -> added[0] += restoreContacts(contacts)));
+                Platform.runLater(() -> result.complete(added[0]));
+            } catch (IOException | RuntimeException e) {
+                Platform.runLater(() -> result.completeExceptionally(e));
+            } finally {
+                Arrays.fill(password, '\0');
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Adds restored contacts that are not in the list yet.
+     * 
+     * @param contacts the restored contacts
+     * @return the number of added contacts
+     */
+    private int restoreContacts(List<Contact> contacts) {
+        List<Contact> added = new ArrayList<>(contacts.size());
+        for (Contact contact : contacts) {
+            if (this.contactList.getContactById(contact.getId()) == null) {
+                added.add(contact);
+            }
+        }
+        this.contactList.restoreContacts(added);
+        return added.size();
+    }
+    
+    /**
+     * Saves all contacts to an encrypted contact file in the background.
+     * The contacts are copied first, so they can be edited while the file is written.
+     * The password is cleared afterwards.
+     * 
+     * @param file the contact file
+     * @param password the password of the file
+     * @return the future completed when the file is written
+     */
+    public CompletableFuture<Void> saveContacts(Path file, char[] password) {
+        List<Contact> contacts = new ArrayList<>(this.contactList.getList().size());
+        for (Contact contact : this.contactList.getList()) {
+            contacts.add(contact.copy());
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                EncryptedContactFile.write(file, contacts, password);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            } finally {
+                Arrays.fill(password, '\0');
+            }
+        }, background());
+    }
+    
+    /**
+     * Adds the contacts of an unencrypted snapshot, e.g. a backup or a book from another machine.
+     * The snapshot is read in the background and its images are added to the image store;
+     * the contacts are added on the JavaFX application thread. Contacts already in the list are
+     * skipped, and the loaded contacts are not recorded in the change log.
+     * 
+     * @param file the snapshot file
+     * @return the future number of added contacts, completed on the JavaFX application thread
+     */
+    public CompletableFuture<Integer> openSnapshot(Path file) {
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        background().execute(() -> {
+            try {
+                List<Contact> contacts = ContactSnapshot.read(file, ImageStore.getDefault());
+                Platform.runLater(() -> result.complete(restoreContacts(contacts)));
+            } catch (IOException | RuntimeException e) {
+                Platform.runLater(() -> result.completeExceptionally(e));
+            }
+        });
+        return result;
+    }
+    
+    /**
+     * Saves all contacts with their images to an unencrypted snapshot in the background.
+     * The contacts are copied first, so they can be edited while the file is written.
+     * 
+     * @param file the snapshot file
+     * @return the future completed when the file is written
+     */
+    public CompletableFuture<Void> saveSnapshot(Path file) {
+        List<Contact> contacts = new ArrayList<>(this.contactList.getList().size());
+        for (Contact contact : this.contactList.getList()) {
+            contacts.add(contact.copy());
+        }
+        return CompletableFuture.runAsync(() -> {
+            try {
+                ContactSnapshot.write(file, contacts);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, background());
+    }
+    
+    /**
+     * Changes the password of an encrypted contact file in the background.
+     * The file is re-encrypted chunk by chunk and replaced once it is complete.
+     * Both passwords are cleared afterwards.
+     * 
+     * @param file the contact file
+     * @param oldPassword the current password of the file
+     * @param newPassword the new password
+     * @return the future completed when the file is replaced
+     */
+    public CompletableFuture<Void> changePassword(Path file, char[] oldPassword, char[] newPassword) {
+        return EncryptedContactFile.rekeyAsync(file, oldPassword, newPassword, background());
+    }
+    
+    /**
+     * Returns the executor of the background tasks.
+     * A single daemon thread is used, so the tasks do not occupy the common pool
+     * and do not keep the application running.
+     * 
+     * @return the executor
+     */
+    private ExecutorService background() {
+        if (this.background == null) {
+            this.background = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "controller-background");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return this.background;
+    }
+    
+    /**
+     * Releases the resources of the controller.
+     * Stops the embedded contact service and the synchronization if running.
+     */
+    public void shutdown() {
+        if (this.sync != null) {
+            this.sync.shutdownNow();
+            this.sync = null;
+        }
+        if (this.background != null) {
+            this.background.shutdownNow();
+            this.background = null;
+        }
+        if (this.emailCheck != null) {
+            this.emailCheck.close();
+            this.emailCheck = null;
+        }
+        if (this.server != null) {
+            this.server.stop();
+            this.server = null;
+        }
     }
     
     /**
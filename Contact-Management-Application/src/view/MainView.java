@@ -1,22 +1,34 @@
 package view;
 
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import email.EmailCheckResult;
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
-import javafx.scene.control.ButtonType;
 import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
 import javafx.scene.control.ListView;
+import javafx.scene.control.SelectionMode;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.BorderPane;
 import javafx.scene.layout.Priority;
 import javafx.scene.layout.VBox;
 import model.Contact;
+import model.SmartGroup;
 
 /**
  * @version 1.00 (20 May 2024)
  * author Lukas Sinning
  */
 public class MainView {
+    /** Size of the image in the contact details */
+    private static final double DETAIL_IMAGE_SIZE = 400;
+    
     /** Main layout of the view */
     private BorderPane view;
     
@@ -32,13 +44,27 @@ public class MainView {
     /** List of contacts */
     private ListView<Contact> listView;
     
+    /** List of smart groups */
+    private ListView<SmartGroup> groupView;
+    
     /**
      * Constructor for MainView.
      * Initializes the view and its components.
      */
     public MainView() {
-        this.popUp = new PopUp();
-        this.controller = new MainController();
+        this(new MainController(), new PopUp());
+    }
+    
+    /**
+     * Constructor for MainView with its controller and pop-up windows,
+     * e.g. scripted ones in a load test.
+     * 
+     * @param controller the controller of the view
+     * @param popUp the pop-up windows for contact management
+     */
+    public MainView(MainController controller, PopUp popUp) {
+        this.popUp = popUp;
+        this.controller = controller;
         initializeView();
     }
     
@@ -50,6 +76,7 @@ public class MainView {
         
         // Initializes the list of contacts
         listView = new ListView<>(controller.getContactList().getList());
+        listView.getSelectionModel().setSelectionMode(SelectionMode.MULTIPLE);
         listView.getSelectionModel().selectedItemProperty().addListener(
                 (observable, o, n) -> showContactDetails(n));
         
@@ -57,13 +84,21 @@ public class MainView {
         Button addBtn = createAddButton();
         Button editBtn = createEditButton();
         Button delBtn = createDeleteButton();
+        Button checkBtn = createCheckEmailsButton();
+        Button openBtn = createOpenButton();
+        Button saveBtn = createSaveButton();
+        Button passwordBtn = createPasswordButton();
         
         VBox rightSide = new VBox(
                 10,
                 listView,
                 addBtn,
                 editBtn,
-                delBtn
+                delBtn,
+                checkBtn,
+                openBtn,
+                saveBtn,
+                passwordBtn
         );
         contactDetails = new VBox();
         
@@ -71,6 +106,7 @@ public class MainView {
         VBox.setVgrow(listView, Priority.ALWAYS);
         view.setCenter(contactDetails);
         view.setRight(rightSide);
+        view.setLeft(createGroupSidebar());
                 
     }
 
@@ -106,20 +142,19 @@ public class MainView {
     }
     
     /**
-     * Deletes the selected contact from the list.
+     * Deletes the selected contacts from the list.
+     * All selected contacts are removed in one bulk operation.
      */
     private void deleteContact() {
-        Contact selectedContact = this.listView.getSelectionModel().getSelectedItem();
-        if (selectedContact != null) {
+        List<String> selectedIds = getSelectedIds();
+        if (!selectedIds.isEmpty()) {
             // Show confirmation dialog
-            Alert confirmDialog = new Alert(Alert.AlertType.CONFIRMATION);
-            confirmDialog.setTitle("Delete Contact");
-            confirmDialog.setHeaderText("Are you sure you want to delete this contact?");
-            if (confirmDialog.showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK) {
-                // Remove the contact from the contact list
-                this.controller.getContactList().delContact(
-                        this.listView.getSelectionModel().getSelectedIndex()
-                );
+            String question = selectedIds.size() == 1
+                    ? "Are you sure you want to delete this contact?"
+                    : "Are you sure you want to delete these " + selectedIds.size() + " contacts?";
+            if (this.popUp.showConfirmation("Delete Contact", question)) {
+                // Remove the contacts from the contact list
+                this.controller.getContactList().removeAll(selectedIds);
                 // Updates the contact details
                 showContactDetails(null);
             }
@@ -141,6 +176,10 @@ public class MainView {
     private Button createEditButton() {
         Button button = new Button("Edit Contact");
         button.setOnAction(event -> {
+            if (this.listView.getSelectionModel().getSelectedItems().size() > 1) {
+                editSelectedContacts();
+                return;
+            }
             // Gets the selected contact
             Contact selectedContact = this.listView.getSelectionModel().getSelectedItem();
             if (selectedContact != null) {
@@ -149,9 +188,9 @@ public class MainView {
                 if (editedContact != null) {
                     // Updates the contact and shows the details
                     this.controller.getContactList().setContactAtIndex(
-                            this.listView.getSelectionModel().getSelectedIndex(),
+                            this.controller.getContactList().indexOf(selectedContact.getId()),
                             editedContact);
-                    showContactDetails(this.listView.getSelectionModel().getSelectedItem());
+                    showContactDetails(editedContact);
                 }
             } else {
                 // Show warning if no contact is selected
@@ -166,6 +205,241 @@ public class MainView {
         
         return button;
     }
+    
+    /**
+     * Adds alias addresses in another domain to all selected contacts.
+     * The contacts are edited in place in one bulk operation, so they stay selected.
+     */
+    private void editSelectedContacts() {
+        List<String> selectedIds = getSelectedIds();
+        String domain = this.popUp.aliasDomainWindow(selectedIds.size());
+        if (domain != null) {
+            this.controller.getContactList().applyAll(selectedIds, contact -> contact.addDomainAlias(domain));
+        }
+    }
+
+    /**
+     * Returns the identifiers of the selected contacts.
+     * 
+     * @return the identifiers in selection order
+     */
+    private List<String> getSelectedIds() {
+        List<String> ids = new ArrayList<>();
+        for (Contact contact : this.listView.getSelectionModel().getSelectedItems()) {
+            ids.add(contact.getId());
+        }
+        return ids;
+    }
+
+    /**
+     * Creates the sidebar with the smart groups.
+     * Selecting a group shows only its members; the counts are kept up to date by the group index.
+     * 
+     * @return the sidebar
+     */
+    private VBox createGroupSidebar() {
+        this.groupView = new ListView<>(this.controller.getGroupIndex().getGroups());
+        this.groupView.setCellFactory(list -> new ListCell<>() {
+            @Override
+            protected void updateItem(SmartGroup group, boolean empty) {
+                super.updateItem(group, empty);
+                setText(empty || group == null ? null
+                        : group.getName() + " (" + controller.getGroupIndex().getCount(group) + ")");
+            }
+        });
+        this.groupView.getSelectionModel().selectedItemProperty().addListener(
+                (observable, o, n) -> showGroup(n));
+        // Updates the counts; the member lists are kept up to date by the group index
+        this.controller.getGroupIndex().addListener(this.groupView::refresh);
+        
+        Button allBtn = new Button("All Contacts");
+        allBtn.setOnAction(event -> this.groupView.getSelectionModel().clearSelection());
+        Button newBtn = new Button("New Group");
+        newBtn.setOnAction(event -> {
+            SmartGroup group = this.popUp.smartGroupWindow();
+            if (group != null) {
+                this.controller.addGroup(group);
+                this.groupView.getSelectionModel().select(group);
+            }
+        });
+        Button delBtn = new Button("Delete Group");
+        delBtn.setOnAction(event -> {
+            SmartGroup group = this.groupView.getSelectionModel().getSelectedItem();
+            if (group == null) {
+                this.popUp.showAlert(Alert.AlertType.WARNING, "No Selection", "Please select a group to delete.");
+            } else if (this.popUp.showConfirmation("Delete Group",
+                    "Are you sure you want to delete the group " + group.getName() + "?")) {
+                this.controller.removeGroup(group);
+            }
+        });
+        
+        VBox sidebar = new VBox(10, new Label("Smart Groups"), this.groupView, allBtn, newBtn, delBtn);
+        sidebar.setPadding(new Insets(10));
+        VBox.setVgrow(this.groupView, Priority.ALWAYS);
+        return sidebar;
+    }
+
+    /**
+     * Shows the members of a smart group in the list of contacts.
+     * The live member list of the group index is shown, so later changes only touch the affected rows.
+     * 
+     * @param group the group to be shown, null for all contacts
+     */
+    private void showGroup(SmartGroup group) {
+        if (group == null) {
+            this.listView.setItems(this.controller.getContactList().getList());
+        } else {
+            this.listView.setItems(this.controller.getGroupIndex().observeMembers(group));
+        }
+        showContactDetails(null);
+    }
+
+    /**
+     * Creates the button to check the deliverability of all email addresses.
+     * The check runs in the background and reports a summary when done.
+     * 
+     * @return the button
+     */
+    private Button createCheckEmailsButton() {
+        Button button = new Button("Check Emails");
+        button.setOnAction(event -> {
+            List<String> emails = new ArrayList<>();
+            for (Contact contact : this.controller.getContactList().getList()) {
+                emails.addAll(contact.getEmails());
+            }
+            button.setDisable(true);
+            this.controller.checkEmails(emails).whenComplete((report, error) -> Platform.runLater(() -> {
+                button.setDisable(false);
+                if (error != null) {
+                    this.popUp.showAlert(Alert.AlertType.ERROR, "Email Check", "The check failed: " + error.getMessage());
+                    return;
+                }
+                this.popUp.showAlert(Alert.AlertType.INFORMATION, "Email Check", String.format(
+                        "%d emails checked in %.0f ms (%.0f emails/s):%n"
+                        + "%d deliverable, %d invalid, %d disposable, %d without mail server, %d lookups failed.",
+                        report.getResults().size(), report.getElapsedMillis(), report.getEmailsPerSecond(),
+                        report.getCount(EmailCheckResult.Status.DELIVERABLE),
+                        report.getCount(EmailCheckResult.Status.INVALID_SYNTAX),
+                        report.getCount(EmailCheckResult.Status.DISPOSABLE),
+                        report.getCount(EmailCheckResult.Status.NO_MX),
+                        report.getCount(EmailCheckResult.Status.LOOKUP_FAILED)));
+            }));
+        });
+        return button;
+    }
+
+    /**
+     * Creates the button to add the contacts of an encrypted contact file or a snapshot.
+     * The contacts of an encrypted file appear chunk by chunk while it is decrypted in the background.
+     * 
+     * @return the button
+     */
+    private Button createOpenButton() {
+        Button button = new Button("Open Contacts");
+        button.setOnAction(event -> {
+            Path file = this.popUp.contactFileWindow(false);
+            if (file == null) {
+                return;
+            }
+            CompletableFuture<Integer> loading;
+            if (isSnapshot(file)) {
+                loading = this.controller.openSnapshot(file);
+            } else {
+                char[] password = this.popUp.passwordWindow("Open Contacts");
+                if (password == null) {
+                    return;
+                }
+                loading = this.controller.openContacts(file, password);
+            }
+            button.setDisable(true);
+            loading.whenComplete((added, error) -> Platform.runLater(() -> {
+                button.setDisable(false);
+                if (error != null) {
+                    this.popUp.showAlert(Alert.AlertType.ERROR, "Open Contacts",
+                            "The file could not be read: " + error.getMessage());
+                } else {
+                    this.popUp.showAlert(Alert.AlertType.INFORMATION, "Open Contacts", added + " contacts added.");
+                }
+            }));
+        });
+        return button;
+    }
+
+    /**
+     * Creates the button to save all contacts to an encrypted contact file or a snapshot.
+     * The file is written in the background.
+     * 
+     * @return the button
+     */
+    private Button createSaveButton() {
+        Button button = new Button("Save Contacts");
+        button.setOnAction(event -> {
+            Path file = this.popUp.contactFileWindow(true);
+            if (file == null) {
+                return;
+            }
+            CompletableFuture<Void> saving;
+            if (isSnapshot(file)) {
+                saving = this.controller.saveSnapshot(file);
+            } else {
+                char[] password = this.popUp.passwordWindow("Save Contacts");
+                if (password == null) {
+                    return;
+                }
+                saving = this.controller.saveContacts(file, password);
+            }
+            button.setDisable(true);
+            saving.whenComplete((done, error) -> Platform.runLater(() -> {
+                button.setDisable(false);
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    this.popUp.showAlert(Alert.AlertType.ERROR, "Save Contacts",
+                            "The file could not be written: " + cause.getMessage());
+                }
+            }));
+        });
+        return button;
+    }
+
+    /**
+     * Checks whether a file is an unencrypted snapshot rather than an encrypted contact file.
+     * 
+     * @param file the chosen file
+     * @return true if the file name ends with .snapshot
+     */
+    private static boolean isSnapshot(Path file) {
+        return file.getFileName().toString().endsWith(".snapshot");
+    }
+
+    /**
+     * Creates the button to change the password of an encrypted contact file.
+     * The file is re-encrypted in the background.
+     * 
+     * @return the button
+     */
+    private Button createPasswordButton() {
+        Button button = new Button("Change Password");
+        button.setOnAction(event -> {
+            Path file = this.popUp.contactFileWindow(false);
+            char[][] passwords = file == null ? null : this.popUp.changePasswordWindow();
+            if (passwords == null) {
+                return;
+            }
+            button.setDisable(true);
+            this.controller.changePassword(file, passwords[0], passwords[1]).whenComplete((done, error) -> Platform.runLater(() -> {
+                button.setDisable(false);
+                if (error != null) {
+                    Throwable cause = error.getCause() != null ? error.getCause() : error;
+                    this.popUp.showAlert(Alert.AlertType.ERROR, "Change Password",
+                            "The password could not be changed: " + cause.getMessage());
+                } else {
+                    this.popUp.showAlert(Alert.AlertType.INFORMATION, "Change Password", "The password was changed.");
+                }
+            }));
+        });
+        return button;
+    }
+
     /**
      * Shows the details of the selected contact.
      *
@@ -177,14 +451,23 @@ public class MainView {
             // Shows the contact details
             Label nameLabel = new Label("First Name: " + contact.getName());
             Label lastNameLabel = new Label("Last Name: " + contact.getLastName());
-            Label emailLabel = new Label("Emails: " + String.join(", ", contact.getEmailList()));
-            ImageView imageView = new ImageView(contact.getImage());
-            imageView.setFitHeight(400);
-            imageView.setFitWidth(400);
+            Label emailLabel = new Label("Emails: " + String.join(", ", contact.getEmails()));
+            // Decodes the image only at the displayed size
+            ImageView imageView = new ImageView(
+                    contact.hasImage() ? contact.getContactImage().getImage(DETAIL_IMAGE_SIZE) : null);
+            imageView.setFitHeight(DETAIL_IMAGE_SIZE);
+            imageView.setFitWidth(DETAIL_IMAGE_SIZE);
             this.contactDetails.getChildren().addAll(nameLabel, lastNameLabel, emailLabel, imageView);
         }
     }
 
+    /**
+     * Releases the resources of the view.
+     */
+    public void shutdown() {
+        this.controller.shutdown();
+    }
+
     /**
      * Returns the view as a BorderPane.
      * 
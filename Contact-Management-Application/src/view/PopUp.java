@@ -1,15 +1,27 @@
 package view;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import javafx.application.Platform;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
 import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.Alert;
 import javafx.scene.control.Button;
+import javafx.scene.control.ButtonType;
+import javafx.scene.control.Dialog;
 import javafx.scene.control.Label;
+import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
+import javafx.scene.control.TextInputDialog;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 import javafx.scene.layout.HBox;
@@ -18,6 +30,9 @@ import javafx.stage.FileChooser;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
 import model.Contact;
+import model.ContactImage;
+import model.ImageStore;
+import model.SmartGroup;
 
 /**
  * Represents a pop-up window for managing contacts.
@@ -34,6 +49,18 @@ public class PopUp {
     /** Contact being edited */
     private Contact editedContact;
     
+    /** Smart group being created */
+    private SmartGroup newGroup;
+    
+    /** Image chosen in the open window */
+    private ContactImage chosenImage;
+    
+    /** Size of the image preview */
+    private static final double PREVIEW_SIZE = 100;
+    
+    /** Thread checking and storing chosen images, created on first use */
+    private static ExecutorService imageImport;
+    
     /**
      * Opens a window to add a new contact.
      * 
@@ -71,20 +98,12 @@ public class PopUp {
         FileChooser fileChooser = new FileChooser();
         Button btnChooseImage = new Button("Choose Image");
         ImageView imageView = new ImageView();
-        btnChooseImage.setOnAction(e -> {
-            // Opens a file dialog for image selection
-            File file = fileChooser.showOpenDialog(window);
-            if (file != null) {
-                // Loads and displays the selected image
-                Image image = new Image(file.toURI().toString());
-                imageView.setImage(image);
-                imageView.setFitHeight(100);
-                imageView.setFitWidth(100);
-            }
-        });
+        this.chosenImage = null;
+        btnChooseImage.setOnAction(e -> chooseImage(window, fileChooser, imageView));
         Button btnDelImage = new Button("Delete Image");
         btnDelImage.setOnAction(e -> {
             // Removes the currently displayed image
+            this.chosenImage = null;
             imageView.setImage(null);
         });
 
@@ -113,7 +132,7 @@ public class PopUp {
                 }
             }
             // Sets the selected image for the contact
-            this.newContact.setImage(imageView.getImage());
+            this.newContact.setContactImage(this.chosenImage);
             // Shows an error if an invalid email was entered
             if (!validEmails) {
                 showAlert(Alert.AlertType.ERROR, "Invalid Email", "Please enter valid email addresses.");
@@ -163,7 +182,7 @@ public class PopUp {
         // VBox for multiple email fields
         VBox emailBox = new VBox(5);
         // Adds the current email addresses of the contact
-        for(String email : contact.getEmailList()) {
+        for(String email : contact.getEmails()) {
             emailBox.getChildren().add(new TextField(email));
         }
         Button btnAddEmail = new Button("Add Email");
@@ -185,23 +204,15 @@ public class PopUp {
         Button btnChooseImage = new Button("Choose Image");
         ImageView imageView = new ImageView();
         // Sets the current image of the contact
-        imageView.setImage(contact.getImage());
-        imageView.setFitHeight(100);
-        imageView.setFitWidth(100);
-        btnChooseImage.setOnAction(e -> {
-            // Opens a file dialog for image selection
-            File file = fileChooser.showOpenDialog(window);
-            if (file != null) {
-                // Loads and displays the selected image
-                Image image = new Image(file.toURI().toString());
-                imageView.setImage(image);
-                imageView.setFitHeight(100);
-                imageView.setFitWidth(100);
-            }
-        });
+        this.chosenImage = contact.getContactImage();
+        imageView.setImage(this.chosenImage == null ? null : this.chosenImage.getImage(PREVIEW_SIZE));
+        imageView.setFitHeight(PREVIEW_SIZE);
+        imageView.setFitWidth(PREVIEW_SIZE);
+        btnChooseImage.setOnAction(e -> chooseImage(window, fileChooser, imageView));
         Button btnDelImage = new Button("Delete Image");
         btnDelImage.setOnAction(e -> {
             // Removes the currently displayed image
+            this.chosenImage = null;
             imageView.setImage(null);
         });
 
@@ -231,7 +242,7 @@ public class PopUp {
                 }
             }
             // Sets the selected image for the contact
-            this.editedContact.setImage(imageView.getImage());
+            this.editedContact.setContactImage(this.chosenImage);
             // Shows an error if an invalid email was entered
             if (!validEmails) {
                 showAlert(Alert.AlertType.ERROR, "Invalid Email", "Please enter valid email addresses.");
@@ -260,6 +271,197 @@ public class PopUp {
         return this.editedContact;
     }
     
+    /**
+     * Opens a window to create a smart group.
+     * 
+     * @return the created group or null if the operation was cancelled
+     */
+    public SmartGroup smartGroupWindow() {
+        Stage window = new Stage();
+        
+        // Blocks interaction with other windows while this one is open
+        window.initModality(Modality.APPLICATION_MODAL);
+        window.setTitle("New Smart Group");
+        
+        TextField textName = new TextField();
+        TextField textExpression = new TextField();
+        textExpression.setPromptText("domain = example.com AND lastName ^= M");
+        Label help = new Label("Fields: name, lastName, email, domain\n"
+                + "Operators: = equals, ^= starts with, $= ends with, *= contains\n"
+                + "Combine conditions with AND");
+        
+        this.newGroup = null;
+        Button saveButton = new Button("Save");
+        saveButton.setOnAction(event -> {
+            try {
+                // Compiles the filter expression
+                this.newGroup = SmartGroup.parse(textName.getText(), textExpression.getText());
+            } catch (IllegalArgumentException e) {
+                showAlert(Alert.AlertType.ERROR, "Invalid Group", e.getMessage());
+                return;
+            }
+            window.close();
+        });
+        
+        // Layout of the pop-up window
+        VBox layout = new VBox(10,
+                createHBox("Name:", textName),
+                createHBox("Filter:", textExpression),
+                help,
+                saveButton
+        );
+        
+        layout.setAlignment(Pos.CENTER);
+        layout.setPadding(new Insets(10));
+        window.setScene(new Scene(layout, 450, 250));
+        window.showAndWait();
+        return this.newGroup;
+    }
+    
+    /**
+     * Asks for the domain in which alias addresses are added to the selected contacts.
+     * 
+     * @param count the number of selected contacts
+     * @return the alias domain or null if the operation was cancelled
+     */
+    public String aliasDomainWindow(int count) {
+        TextInputDialog dialog = new TextInputDialog();
+        dialog.setTitle("Edit " + count + " Contacts");
+        dialog.setHeaderText("Add an alias in another domain for every email of the selected contacts.");
+        dialog.setContentText("Alias domain:");
+        String domain = dialog.showAndWait().orElse(null);
+        if (domain == null || domain.isBlank()) {
+            return null;
+        }
+        return domain.trim();
+    }
+    
+    /**
+     * Lets the user choose an encrypted contact file or an unencrypted snapshot.
+     * 
+     * @param save true to choose a file to be written, false to choose an existing file
+     * @return the chosen file or null if the operation was cancelled
+     */
+    public Path contactFileWindow(boolean save) {
+        FileChooser fileChooser = new FileChooser();
+        fileChooser.setTitle(save ? "Save Contacts" : "Open Contacts");
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Contact Files", "*.contacts"));
+        fileChooser.getExtensionFilters().add(new FileChooser.ExtensionFilter("Unencrypted Snapshots", "*.snapshot"));
+        File file = save ? fileChooser.showSaveDialog(null) : fileChooser.showOpenDialog(null);
+        return file == null ? null : file.toPath();
+    }
+    
+    /**
+     * Asks for the password of an encrypted contact file.
+     * 
+     * @param title the title of the dialog
+     * @return the password or null if the operation was cancelled or the password is empty
+     */
+    public char[] passwordWindow(String title) {
+        PasswordField passwordField = new PasswordField();
+        Dialog<String> dialog = new Dialog<>();
+        dialog.setTitle(title);
+        dialog.setHeaderText("The contact file is encrypted with a password.");
+        dialog.getDialogPane().setContent(new HBox(10, new Label("Password:"), passwordField));
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        dialog.setResultConverter(button -> button == ButtonType.OK ? passwordField.getText() : null);
+        String password = dialog.showAndWait().orElse(null);
+        if (password == null || password.isEmpty()) {
+            return null;
+        }
+        return password.toCharArray();
+    }
+    
+    /**
+     * Asks for the current and a new password of an encrypted contact file.
+     * The new password has to be entered twice.
+     * 
+     * @return the current and the new password, or null if the operation was cancelled,
+     *         a password is empty or the new passwords do not match
+     */
+    public char[][] changePasswordWindow() {
+        PasswordField oldField = new PasswordField();
+        PasswordField newField = new PasswordField();
+        PasswordField repeatField = new PasswordField();
+        Dialog<ButtonType> dialog = new Dialog<>();
+        dialog.setTitle("Change Password");
+        dialog.setHeaderText("The contact file is encrypted again with the new password.");
+        dialog.getDialogPane().setContent(new VBox(10,
+                new HBox(10, new Label("Current password:"), oldField),
+                new HBox(10, new Label("New password:"), newField),
+                new HBox(10, new Label("Repeat new password:"), repeatField)));
+        dialog.getDialogPane().getButtonTypes().addAll(ButtonType.OK, ButtonType.CANCEL);
+        if (dialog.showAndWait().orElse(ButtonType.CANCEL) != ButtonType.OK
+                || oldField.getText().isEmpty() || newField.getText().isEmpty()) {
+            return null;
+        }
+        if (!newField.getText().equals(repeatField.getText())) {
+            showAlert(Alert.AlertType.ERROR, "Change Password", "The new passwords do not match.");
+            return null;
+        }
+        return new char[][] { oldField.getText().toCharArray(), newField.getText().toCharArray() };
+    }
+    
+    /**
+     * Lets the user choose an image file and adds it to the image store.
+     * The file is decoded at preview size to check that it is an image, then hashed and copied
+     * into the store in the background; the window is disabled until the preview is shown.
+     * Identical images are stored only once.
+     * 
+     * @param window the owner window of the file dialog
+     * @param fileChooser the file chooser
+     * @param imageView the view showing the preview
+     */
+    private void chooseImage(Stage window, FileChooser fileChooser, ImageView imageView) {
+        // Opens a file dialog for image selection
+        File file = fileChooser.showOpenDialog(window);
+        if (file == null) {
+            return;
+        }
+        Node root = window.getScene().getRoot();
+        root.setDisable(true);
+        CompletableFuture.supplyAsync(() -> {
+            Image preview = new Image(file.toURI().toString(), PREVIEW_SIZE, PREVIEW_SIZE, true, true);
+            if (preview.isError()) {
+                throw new CompletionException(new IOException(file.getName() + " is not a supported image"));
+            }
+            try {
+                return Map.entry(ImageStore.getDefault().put(file.toPath()), preview);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }, imageImport()).whenComplete((stored, error) -> Platform.runLater(() -> {
+            root.setDisable(false);
+            if (error != null) {
+                Throwable cause = error instanceof CompletionException && error.getCause() != null
+                        ? error.getCause() : error;
+                showAlert(Alert.AlertType.ERROR, "Invalid Image", "The image could not be stored: " + cause.getMessage());
+                return;
+            }
+            // Displays the stored image
+            this.chosenImage = stored.getKey();
+            imageView.setImage(stored.getValue());
+            imageView.setFitHeight(PREVIEW_SIZE);
+            imageView.setFitWidth(PREVIEW_SIZE);
+        }));
+    }
+    
+    /**
+     * Returns the executor checking and storing chosen images.
+     * 
+     * @return the executor with a single daemon thread
+     */
+    private static synchronized ExecutorService imageImport() {
+        if (imageImport == null) {
+            imageImport = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "image-import");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return imageImport;
+    }
+    
     /**
      * Creates an HBox layout with a label and a text field.
      * 
@@ -274,6 +476,20 @@ public class PopUp {
         return hBox;
     }
     
+    /**
+     * Shows a confirmation dialog.
+     *
+     * @param title the title of the dialog
+     * @param header the question to be confirmed
+     * @return true if the user confirmed
+     */
+    protected boolean showConfirmation(String title, String header) {
+        Alert confirmDialog = new Alert(Alert.AlertType.CONFIRMATION);
+        confirmDialog.setTitle(title);
+        confirmDialog.setHeaderText(header);
+        return confirmDialog.showAndWait().orElse(ButtonType.CANCEL) == ButtonType.OK;
+    }
+    
     /**
      * Shows an alert dialog.
      *
@@ -0,0 +1,84 @@
+package email;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests the lookups of the email check pipeline against a stub resolver.
+ * Runs without a test framework; a failed check ends with an AssertionError.
+ *
+ * Usage: EmailCheckPipelineTest
+ */
+public class EmailCheckPipelineTest {
+
+    /**
+     * Runs the tests.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        lookupPerDistinctNormalizedDomain();
+        noLookupsOnCachedRun();
+        System.out.println("EmailCheckPipelineTest passed");
+    }
+
+    /**
+     * Spellings of the same domain are normalized before the lookup,
+     * so every distinct domain is looked up exactly once.
+     */
+    private static void lookupPerDistinctNormalizedDomain() {
+        StubMxResolver resolver = new StubMxResolver(true);
+        try (EmailCheckPipeline pipeline = new EmailCheckPipeline(resolver, Set.of("mailinator.com"), 4)) {
+            EmailCheckPipeline.Report report = pipeline.check(List.of(
+                    "jane@example.com",
+                    "Jane+news@Example.COM",
+                    " john@EXAMPLE.com ",
+                    "max@example.org",
+                    "eva@bücher.de",
+                    "otto@xn--bcher-kva.de",
+                    "spam@mailinator.com",
+                    "not-an-address"));
+            check(report.getDomainCount() == 3, "distinct domains: " + report.getDomainCount());
+            check(resolver.getLookupCount() == 3, "lookups: " + resolver.getLookupCount());
+            check(report.getLookupCount() == 3, "reported lookups: " + report.getLookupCount());
+            check(report.getCount(EmailCheckResult.Status.DELIVERABLE) == 6,
+                    "deliverable: " + report.getCount(EmailCheckResult.Status.DELIVERABLE));
+            check(report.getCount(EmailCheckResult.Status.DISPOSABLE) == 1,
+                    "disposable: " + report.getCount(EmailCheckResult.Status.DISPOSABLE));
+            check(report.getCount(EmailCheckResult.Status.INVALID_SYNTAX) == 1,
+                    "invalid: " + report.getCount(EmailCheckResult.Status.INVALID_SYNTAX));
+        }
+    }
+
+    /**
+     * A second run over the same domains is answered from the cache.
+     */
+    private static void noLookupsOnCachedRun() {
+        StubMxResolver resolver = new StubMxResolver(true);
+        try (EmailCheckPipeline pipeline = new EmailCheckPipeline(resolver, 4)) {
+            List<String> emails = List.of("a@example.com", "b@example.org", "c@Example.Org");
+            pipeline.check(emails);
+            long lookups = resolver.getLookupCount();
+            check(lookups == 2, "lookups of the first run: " + lookups);
+
+            EmailCheckPipeline.Report report = pipeline.check(emails);
+            check(resolver.getLookupCount() == lookups,
+                    "lookups of the second run: " + (resolver.getLookupCount() - lookups));
+            check(report.getLookupCount() == 0, "reported lookups of the second run: " + report.getLookupCount());
+            check(report.getCount(EmailCheckResult.Status.DELIVERABLE) == emails.size(),
+                    "deliverable: " + report.getCount(EmailCheckResult.Status.DELIVERABLE));
+        }
+    }
+
+    /**
+     * Fails if a condition does not hold.
+     *
+     * @param condition the condition
+     * @param message the description of the actual value
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
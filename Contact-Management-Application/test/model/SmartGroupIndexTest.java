@@ -0,0 +1,181 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import javafx.collections.ListChangeListener;
+import javafx.collections.ObservableList;
+
+/**
+ * Tests the smart group index against filtering the whole list after random bulk changes.
+ * Runs without a test framework; a failed check ends with an AssertionError.
+ *
+ * Usage: SmartGroupIndexTest
+ */
+public class SmartGroupIndexTest {
+
+    /** Letters used for random names */
+    private static final String LETTERS = "ABMNST";
+
+    /**
+     * Runs the tests.
+     *
+     * @param args not used
+     */
+    public static void main(String[] args) {
+        randomChanges(new Random(1));
+        scatteredRemoval();
+        System.out.println("SmartGroupIndexTest passed");
+    }
+
+    /**
+     * Applies random bulk changes and compares the groups with a full filter after each of them.
+     *
+     * @param random the random source
+     */
+    private static void randomChanges(Random random) {
+        ContactList contactList = new ContactList();
+        contactList.addContacts(randomContacts(random, 200));
+        SmartGroupIndex index = new SmartGroupIndex(contactList);
+        List<SmartGroup> groups = List.of(
+                SmartGroup.parse("M", "lastName ^= M"),
+                SmartGroup.parse("Example", "domain = example.com"),
+                SmartGroup.parse("A", "name *= a AND lastName $= s"));
+        List<List<Contact>> shadows = new ArrayList<>();
+        int[] changes = new int[1];
+        for (SmartGroup group : groups) {
+            index.addGroup(group);
+            ObservableList<Contact> members = index.observeMembers(group);
+            List<Contact> shadow = new ArrayList<>(members);
+            shadows.add(shadow);
+            members.addListener((ListChangeListener<Contact>) change -> {
+                changes[0]++;
+                replay(change, shadow);
+            });
+        }
+        for (int round = 0; round < 300; round++) {
+            List<Contact> list = contactList.getList();
+            List<String> ids = new ArrayList<>();
+            for (Contact contact : list) {
+                if (random.nextInt(8) == 0) {
+                    ids.add(contact.getId());
+                }
+            }
+            changes[0] = 0;
+            switch (random.nextInt(4)) {
+                case 0:
+                    contactList.addContacts(randomContacts(random, random.nextInt(20)));
+                    break;
+                case 1:
+                    contactList.removeAll(ids);
+                    break;
+                case 2:
+                    contactList.applyAll(ids, contact -> contact.setLastName(randomName(random)));
+                    break;
+                default:
+                    if (!list.isEmpty()) {
+                        contactList.setContactAtIndex(random.nextInt(list.size()), randomContacts(random, 1).get(0));
+                    }
+                    break;
+            }
+            check(changes[0] <= groups.size(), "more than one change per member list: " + changes[0]);
+            for (int i = 0; i < groups.size(); i++) {
+                List<Contact> expected = new ArrayList<>();
+                for (Contact contact : contactList.getList()) {
+                    if (groups.get(i).test(contact)) {
+                        expected.add(contact);
+                    }
+                }
+                SmartGroup group = groups.get(i);
+                check(index.getCount(group) == expected.size(), "count of " + group.getName() + " in round " + round);
+                check(index.getMembers(group).equals(expected), "members of " + group.getName() + " in round " + round);
+                check(index.observeMembers(group).equals(expected), "live members of " + group.getName() + " in round " + round);
+                check(shadows.get(i).equals(expected), "replayed changes of " + group.getName() + " in round " + round);
+            }
+        }
+    }
+
+    /**
+     * Removes many scattered contacts from a large list with many groups.
+     */
+    private static void scatteredRemoval() {
+        Random random = new Random(2);
+        ContactList contactList = new ContactList();
+        contactList.addContacts(randomContacts(random, 100_000));
+        SmartGroupIndex index = new SmartGroupIndex(contactList);
+        for (int i = 0; i < 50; i++) {
+            SmartGroup group = SmartGroup.parse("Group " + i, "lastName ^= " + LETTERS.charAt(i % LETTERS.length()));
+            index.addGroup(group);
+            index.observeMembers(group);
+        }
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < contactList.getList().size(); i += 2) {
+            ids.add(contactList.getList().get(i).getId());
+        }
+        long start = System.nanoTime();
+        contactList.removeAll(ids);
+        long millis = (System.nanoTime() - start) / 1_000_000;
+        check(contactList.getList().size() == 50_000, "size after removal");
+        System.out.println("Removed 50000 scattered contacts with 50 groups in " + millis + " ms");
+    }
+
+    /**
+     * Applies the sub-changes of a change to a copy of the list.
+     *
+     * @param change the change
+     * @param shadow the copy
+     */
+    private static void replay(ListChangeListener.Change<? extends Contact> change, List<Contact> shadow) {
+        while (change.next()) {
+            if (change.wasUpdated()) {
+                continue;
+            }
+            shadow.subList(change.getFrom(), change.getFrom() + change.getRemovedSize()).clear();
+            shadow.addAll(change.getFrom(), change.getAddedSubList());
+        }
+    }
+
+    /**
+     * Creates contacts with random names and email domains.
+     *
+     * @param random the random source
+     * @param count the number of contacts
+     * @return the contacts
+     */
+    private static List<Contact> randomContacts(Random random, int count) {
+        List<Contact> contacts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Contact contact = new Contact(randomName(random), randomName(random));
+            contact.addEmail("user" + i + (random.nextBoolean() ? "@example.com" : "@example.org"));
+            contacts.add(contact);
+        }
+        return contacts;
+    }
+
+    /**
+     * Creates a random name.
+     *
+     * @param random the random source
+     * @return the name
+     */
+    private static String randomName(Random random) {
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 4; i++) {
+            name.append(LETTERS.charAt(random.nextInt(LETTERS.length())));
+        }
+        return name.toString().charAt(0) + name.substring(1).toLowerCase();
+    }
+
+    /**
+     * Fails if a condition does not hold.
+     *
+     * @param condition the condition
+     * @param message the description of the failed check
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
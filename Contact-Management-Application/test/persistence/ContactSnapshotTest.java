@@ -0,0 +1,124 @@
+package persistence;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import model.Contact;
+import model.ContactImage;
+import model.ImageStore;
+
+/**
+ * Tests writing and reading snapshots with images.
+ * Runs without a test framework; a failed check ends with an AssertionError.
+ *
+ * Usage: ContactSnapshotTest
+ */
+public class ContactSnapshotTest {
+
+    /**
+     * Runs the tests.
+     *
+     * @param args not used
+     * @throws Exception if a test cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("snapshot");
+        try {
+            restoresImagesIntoOtherStore(directory);
+            rejectsInvalidHashes(directory);
+        } finally {
+            try (Stream<Path> files = Files.walk(directory)) {
+                for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(file);
+                }
+            }
+        }
+        System.out.println("ContactSnapshotTest passed");
+    }
+
+    /**
+     * Images written from one store are streamed into another store when the snapshot is read.
+     *
+     * @param directory the directory of the test files
+     */
+    private static void restoresImagesIntoOtherStore(Path directory) throws Exception {
+        ImageStore source = new ImageStore(directory.resolve("source"));
+        Random random = new Random(3);
+        List<ContactImage> images = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            byte[] data = new byte[100_000 + i];
+            random.nextBytes(data);
+            images.add(source.put(new ByteArrayInputStream(data)));
+        }
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            Contact contact = new Contact("Name" + i, "Last" + i, "user" + i + "@example.com");
+            if (i % 10 == 0) {
+                contact.setContactImage(images.get(i % images.size()));
+            }
+            contacts.add(contact);
+        }
+        Path file = directory.resolve("test.snapshot");
+        ContactSnapshot.write(file, contacts);
+        try (Stream<Path> files = Files.list(directory)) {
+            check(files.noneMatch(path -> path.getFileName().toString().endsWith(".tmp")), "temporary file left");
+        }
+
+        ImageStore target = new ImageStore(directory.resolve("target"));
+        List<Contact> read = ContactSnapshot.read(file, target);
+        check(read.size() == contacts.size(), "contacts: " + read.size());
+        for (int i = 0; i < contacts.size(); i++) {
+            ContactImage image = contacts.get(i).getContactImage();
+            ContactImage restored = read.get(i).getContactImage();
+            check(image == null ? restored == null : restored.getHash().equals(image.getHash()), "image of contact " + i);
+        }
+        for (ContactImage image : images) {
+            check(target.contains(image.getHash()), "image not restored: " + image.getHash());
+            try (InputStream expected = image.openStream(); InputStream actual = target.open(image.getHash())) {
+                check(Arrays.equals(expected.readAllBytes(), actual.readAllBytes()), "image content");
+            }
+        }
+        try (ContactSnapshot.Reader reader = ContactSnapshot.Reader.open(file)) {
+            check(reader.restoreImages(target) == 0, "images restored twice");
+        }
+    }
+
+    /**
+     * Hashes that are not SHA-256 hex strings never become paths in a store.
+     *
+     * @param directory the directory of the test files
+     */
+    private static void rejectsInvalidHashes(Path directory) throws IOException {
+        ImageStore store = new ImageStore(directory.resolve("source"));
+        for (String hash : new String[] {"../../x", "A".repeat(64), "0".repeat(63), ""}) {
+            try {
+                store.contains(hash);
+                throw new AssertionError("hash accepted: " + hash);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+        check(ImageStore.isValidHash("0123456789abcdef".repeat(4)), "valid hash rejected");
+    }
+
+    /**
+     * Fails if a condition does not hold.
+     *
+     * @param condition the condition
+     * @param message the description of the failed check
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package persistence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Stream;
+
+import model.Contact;
+import model.ImageStore;
+
+/**
+ * Tests writing, reading and re-keying encrypted contact files.
+ * Runs without a test framework; a failed check ends with an AssertionError.
+ *
+ * Usage: EncryptedContactFileTest
+ */
+public class EncryptedContactFileTest {
+
+    /**
+     * Runs the tests.
+     *
+     * @param args not used
+     * @throws Exception if a test cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        Path directory = Files.createTempDirectory("contacts");
+        try {
+            readAndRekey(directory);
+        } finally {
+            try (Stream<Path> files = Files.list(directory)) {
+                for (Path file : (Iterable<Path>) files::iterator) {
+                    Files.delete(file);
+                }
+            }
+            Files.delete(directory);
+        }
+        System.out.println("EncryptedContactFileTest passed");
+    }
+
+    /**
+     * Reads a file chunk by chunk in order, changes its password and reads it again.
+     *
+     * @param directory the directory of the test files
+     */
+    private static void readAndRekey(Path directory) throws Exception {
+        Path file = directory.resolve("test.contacts");
+        ImageStore store = new ImageStore(directory.resolve("images"));
+        List<Contact> contacts = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            contacts.add(new Contact("Name" + i, "Last" + i, "user" + i + "@example.com"));
+        }
+        EncryptedContactFile.write(file, contacts, "old".toCharArray(), 64);
+
+        List<Integer> chunkSizes = new ArrayList<>();
+        List<Contact> read = new ArrayList<>();
+        EncryptedContactFile.read(file, "old".toCharArray(), store, chunk -> {
+            chunkSizes.add(chunk.size());
+            read.addAll(chunk);
+        });
+        check(chunkSizes.size() == 16, "chunks: " + chunkSizes.size());
+        for (int i = 0; i < contacts.size(); i++) {
+            check(read.get(i).getId().equals(contacts.get(i).getId()), "order of contact " + i);
+        }
+
+        char[] oldPassword = "old".toCharArray();
+        char[] newPassword = "new".toCharArray();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            EncryptedContactFile.rekeyAsync(file, oldPassword, newPassword, executor).get();
+        } finally {
+            executor.shutdown();
+        }
+        check(isCleared(oldPassword) && isCleared(newPassword), "passwords not cleared");
+        check(EncryptedContactFile.readAll(file, "new".toCharArray(), store).size() == contacts.size(),
+                "contacts after rekey");
+        try {
+            EncryptedContactFile.readAll(file, "old".toCharArray(), store);
+            throw new AssertionError("old password still accepted");
+        } catch (IOException e) {
+            // Expected
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            check(files.noneMatch(path -> path.getFileName().toString().endsWith(".tmp")), "temporary file left");
+        }
+    }
+
+    /**
+     * Checks that a password was overwritten.
+     *
+     * @param password the password
+     * @return true if all characters are zero
+     */
+    private static boolean isCleared(char[] password) {
+        char[] zeros = new char[password.length];
+        return Arrays.equals(password, zeros);
+    }
+
+    /**
+     * Fails if a condition does not hold.
+     *
+     * @param condition the condition
+     * @param message the description of the failed check
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import model.ContactList;
+
+/**
+ * Tests the contact service with a single model thread, like the JavaFX application thread.
+ * Runs without a test framework; a failed check ends with an AssertionError.
+ *
+ * Usage: ContactServerTest
+ */
+public class ContactServerTest {
+
+    /**
+     * Runs the tests.
+     *
+     * @param args not used
+     * @throws Exception if a test cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        startOnModelThread();
+        etagDiffersAfterRestart();
+        System.out.println("ContactServerTest passed");
+    }
+
+    /**
+     * Starting the server on the model thread must not wait for a task queued behind itself.
+     */
+    private static void startOnModelThread() throws Exception {
+        Thread[] modelThread = new Thread[1];
+        ExecutorService model = Executors.newSingleThreadExecutor(runnable -> {
+            modelThread[0] = new Thread(runnable, "contact-model");
+            modelThread[0].setDaemon(true);
+            return modelThread[0];
+        });
+        ContactList contactList = new ContactList();
+        ContactServer server = new ContactServer(contactList, model, () -> Thread.currentThread() == modelThread[0]);
+        try {
+            model.submit(() -> {
+                contactList.addContact("Jane", "Doe");
+                server.start(0);
+                return null;
+            }).get(5, TimeUnit.SECONDS);
+        } catch (TimeoutException e) {
+            throw new AssertionError("start on the model thread did not return");
+        }
+        try {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/contacts")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            check(response.statusCode() == 200, "status: " + response.statusCode());
+            check(response.body().contains("\"Jane\""), "body: " + response.body());
+        } finally {
+            server.stop();
+            model.shutdown();
+        }
+    }
+
+    /**
+     * A restarted server starts counting versions again, so its ETags must not match the old ones.
+     */
+    private static void etagDiffersAfterRestart() throws Exception {
+        ExecutorService model = Executors.newSingleThreadExecutor();
+        try {
+            String first = etagOfFreshServer(model);
+            String second = etagOfFreshServer(model);
+            check(!first.equals(second), "same ETag after restart: " + first);
+        } finally {
+            model.shutdown();
+        }
+    }
+
+    /**
+     * Starts a server over a new list with one contact and returns the ETag of the list.
+     *
+     * @param model the model executor
+     * @return the ETag
+     */
+    private static String etagOfFreshServer(ExecutorService model) throws Exception {
+        ContactList contactList = new ContactList();
+        model.submit(() -> contactList.addContact("Jane", "Doe")).get();
+        ContactServer server = new ContactServer(contactList, model);
+        server.start(0);
+        try {
+            HttpResponse<String> response = HttpClient.newHttpClient().send(
+                    HttpRequest.newBuilder(URI.create("http://localhost:" + server.getPort() + "/contacts")).build(),
+                    HttpResponse.BodyHandlers.ofString());
+            check(response.statusCode() == 200, "status: " + response.statusCode());
+            return response.headers().firstValue("ETag").orElseThrow();
+        } finally {
+            server.stop();
+        }
+    }
+
+    /**
+     * Fails if a condition does not hold.
+     *
+     * @param condition the condition
+     * @param message the description of the actual value
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,101 @@
+package service;
+
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import model.Contact;
+import model.ContactList;
+
+/**
+ * Tests pulling changes between two replicas over their contact services.
+ * Runs without a test framework; a failed check ends with an AssertionError.
+ *
+ * Usage: ReplicaSyncTest
+ */
+public class ReplicaSyncTest {
+
+    /**
+     * Runs the tests.
+     *
+     * @param args not used
+     * @throws Exception if a test cannot be run
+     */
+    public static void main(String[] args) throws Exception {
+        pullBothWays();
+        indexOfAfterRemovals();
+        System.out.println("ReplicaSyncTest passed");
+    }
+
+    /**
+     * Changes reach the other replica, are not echoed back and are dropped from the log once pulled.
+     */
+    private static void pullBothWays() throws Exception {
+        ExecutorService model = Executors.newSingleThreadExecutor();
+        ContactList first = new ContactList("first");
+        ContactList second = new ContactList("second");
+        ContactServer firstServer = new ContactServer(first, model);
+        ContactServer secondServer = new ContactServer(second, model);
+        firstServer.start(0);
+        secondServer.start(0);
+        try {
+            URI firstAddress = URI.create("http://localhost:" + firstServer.getPort());
+            URI secondAddress = URI.create("http://localhost:" + secondServer.getPort());
+            ReplicaSync firstSync = new ReplicaSync(first, model);
+            ReplicaSync secondSync = new ReplicaSync(second, model);
+
+            model.submit(() -> first.addContact("Jane", "Doe")).get();
+            check(secondSync.pull(firstAddress) == 1, "first pull did not apply the new contact");
+            check(model.submit(() -> second.getList().size()).get() == 1, "contact missing on second replica");
+
+            int echoed = model.submit(() -> ReplicaSync.createDelta(second, 0, "first").getChanges().size()).get();
+            check(echoed == 0, "changes echoed back to their origin: " + echoed);
+            check(firstSync.pull(secondAddress) == 0, "pull from second applied changes");
+
+            check(secondSync.pull(firstAddress) == 0, "second pull applied changes again");
+            List<?> retained = model.submit(() -> first.getChangeLog().since(0)).get();
+            check(retained == null, "change log of first replica not truncated after acknowledgement");
+
+            ContactList third = new ContactList("third");
+            check(new ReplicaSync(third, model).pull(firstAddress) == 1, "new peer did not get the truncated changes");
+        } finally {
+            firstServer.stop();
+            secondServer.stop();
+            model.shutdown();
+        }
+    }
+
+    /**
+     * Positions of contacts follow removals and insertions.
+     */
+    private static void indexOfAfterRemovals() {
+        ContactList contactList = new ContactList();
+        for (int i = 0; i < 5; i++) {
+            contactList.addContact("Name" + i, "Last" + i);
+        }
+        String third = contactList.getContact(2).getId();
+        String last = contactList.getContact(4).getId();
+        check(contactList.indexOf(last) == 4, "index of last contact");
+        contactList.delContact(0);
+        check(contactList.indexOf(third) == 1, "index after removal: " + contactList.indexOf(third));
+        Contact added = new Contact("New", "Contact");
+        contactList.addContact(added);
+        check(contactList.indexOf(added.getId()) == 4, "index of appended contact");
+        contactList.removeAll(List.of(third));
+        check(contactList.indexOf(third) == -1, "index of removed contact");
+        check(contactList.indexOf(last) == 2, "index after bulk removal: " + contactList.indexOf(last));
+    }
+
+    /**
+     * Fails if a condition does not hold.
+     *
+     * @param condition the condition
+     * @param message the description of the actual value
+     */
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}